@@ -4,25 +4,98 @@ import android.app.Activity;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
+import android.util.Log;
 
-import com.gingerman.tictactoe.data.DatabaseManager;
+import com.gingerman.tictactoe.ai.AlphaBetaStrategy;
+import com.gingerman.tictactoe.ai.MonteCarloStrategy;
+import com.gingerman.tictactoe.ai.MoveStrategy;
+import com.gingerman.tictactoe.ai.PerfectPlayTable;
+import com.gingerman.tictactoe.ai.Tablebase;
+import com.gingerman.tictactoe.data.GameLog;
+import com.gingerman.tictactoe.data.GameRecord;
+import com.gingerman.tictactoe.data.MemoryPlayerStore;
+import com.gingerman.tictactoe.data.MoveJournal;
+import com.gingerman.tictactoe.data.PlayerCache;
+import com.gingerman.tictactoe.data.PlayerStore;
+import com.gingerman.tictactoe.data.Ranking;
+import com.gingerman.tictactoe.data.SqlitePlayerStore;
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.ComputerPlayer;
 import com.gingerman.tictactoe.model.Game;
+import com.gingerman.tictactoe.model.GameConfig;
 import com.gingerman.tictactoe.model.Player;
+import com.gingerman.tictactoe.rating.EloRating;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * The brains of the data side of the application, this singleton allows access to game logic
  */
 public class ApplicationManager {
+    private static final String LOG_TAG = "ApplicationManager";
+    private static final long COMPUTER_THINKING_TIME_MS = 1000;
+    // boards up to this size are searched exhaustively, larger ones by sampling random games
+    private static final int MAX_ALPHA_BETA_BOARD_SIZE = 16;
+    private static final String GAME_LOG_DIRECTORY = "gamelog";
+    // values of R.string.player_store
+    private static final String STORE_GAME_LOG = "game_log";
+    private static final String STORE_MEMORY = "memory";
+    // stores are opened and closed in turn on here, so one closed as an activity is destroyed is closed before the
+    // next activity's is opened, even if it was still being opened
+    private static final Executor STORE_EXECUTOR = Executors.newSingleThreadExecutor();
+
     private static ApplicationManager sInstance = null;
 
     private Activity mActivity;
-    public List<Player> players = new ArrayList<Player>();
+    private PlayerStore mStore = null;
+    private MoveJournal mMoveJournal = null;
+    private volatile Game mUnfinishedGame = null; // left in the move journal when we last died, until resumed or discarded
+    private final PlayerCache mPlayerCache = new PlayerCache();
+    private EloRating mElo = null; // with R.string.rating_k_factor
+
+    private Startup mStartup = null; // of the last initialize
+    private boolean mInitialized = false; // UI thread only
+    private final List<ApplicationManagerListener> mInitializedListeners = new ArrayList<ApplicationManagerListener>(); // UI thread only
+
+    private volatile Bitmap xBmp = null;
+    private volatile Bitmap oBmp = null;
+    private PerfectPlayTable perfectPlayTable = null; // loaded on first use
+    private Map<GameConfig, Tablebase> tablebases = new HashMap<GameConfig, Tablebase>(); // null if there is none
 
-    private Bitmap xBmp = null;
-    private Bitmap oBmp = null;
+    /**
+     * One initialize call's startup, run as concurrent tasks joined on the UI thread. Later steps wait on the latches
+     * for what they need. Each call has its own, so tasks left running by an activity destroyed while starting, as
+     * when rotated, neither count down nor report to the next activity's.
+     */
+    private static class Startup {
+        final StartupTrace trace;
+        final PlayerStore store;
+        final MoveJournal journal;
+        final CountDownLatch bitmapsDecoded = new CountDownLatch(1);
+        final CountDownLatch storeOpened = new CountDownLatch(1);
+        volatile boolean storeFailed = false;
+        volatile boolean cancelled = false; // set once the activity is destroyed
+        int tasksLeft = 2; // UI thread only
+        String error = null; // UI thread only
+
+        Startup(StartupTrace trace, PlayerStore store, MoveJournal journal) {
+            this.trace = trace;
+            this.store = store;
+            this.journal = journal;
+        }
+    }
 
     public interface ApplicationManagerListener {
         public void onComplete(); // callback when initialization is complete
@@ -32,6 +105,10 @@ public class ApplicationManager {
         public void onComplete(Game game); // callback to report game created
         public void onError(String msg); // error occurred
     }
+    public interface LeaderboardListener {
+        public void onComplete(List<Player> players); // callback with the page's players, best first
+        public void onError(String msg); // error occurred
+    }
 
     protected ApplicationManager() {}
     public static ApplicationManager getsInstance() {
@@ -43,125 +120,535 @@ public class ApplicationManager {
 
     /**
      * WARNING: This initializer must be called before the instance is used (should be called in onCreate)
+     *
+     * Bitmaps are decoded while the store is opened and players loaded, each on a thread of its own, and
+     * leaderboards asked for meanwhile are read as soon as the store is open, so the first page of results is
+     * shown without waiting for every player to load. Games wait for the whole load, as the player cache that
+     * names are found, suggested and rated from must hold every player before it is kept up to date in memory.
      * @param activity activity context we are running in
+     * @param trace trace to time the steps of starting up into
      * @param listener provides callback when manager is usable, on UI thread
      */
-    public void initialize(final Activity activity, final ApplicationManagerListener listener) {
+    public void initialize(final Activity activity, StartupTrace trace, final ApplicationManagerListener listener) {
         mActivity = activity;
-        xBmp = BitmapFactory.decodeResource(mActivity.getResources(), R.drawable.x);
-        oBmp = BitmapFactory.decodeResource(mActivity.getResources(), R.drawable.o);
-        DatabaseManager.getInstance().initialize(mActivity, new ApplicationManagerListener() {
-            @Override
-            public void onComplete() {
-                // Database is ready, populate our in memory data
-                new LoadObjectsIntoMemoryTask().execute(new ApplicationManagerListener[]{listener});
-            }
+        mElo = new EloRating(Double.parseDouble(mActivity.getString(R.string.rating_k_factor)));
+        mStore = createStore(mActivity.getString(R.string.player_store));
+        mMoveJournal = new MoveJournal(mActivity.getFilesDir());
+        mStartup = new Startup(trace, mStore, mMoveJournal);
+        new DecodeBitmapsTask(mStartup, listener).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        new LoadObjectsIntoMemoryTask(mStartup).executeOnExecutor(STORE_EXECUTOR, listener);
+    }
+
+    // called on the UI thread as each of a startup's tasks finishes, telling the listeners once they all have, unless
+    // its activity has been destroyed since. Those waiting in whenInitialized are told before initialize's.
+    private void startupTaskFinished(Startup startup, ApplicationManagerListener listener, String error) {
+        if (error != null && startup.error == null) startup.error = error;
+        if (--startup.tasksLeft > 0 || startup.cancelled) return;
+        mInitialized = startup.error == null;
 
-            @Override
-            public void onError(String msg) {
-                if (listener != null) listener.onError("Initialization failed with error message: "+msg);
+        List<ApplicationManagerListener> listeners = new ArrayList<ApplicationManagerListener>(mInitializedListeners);
+        mInitializedListeners.clear();
+        if (listener != null) listeners.add(listener);
+        for (ApplicationManagerListener each : listeners) {
+            if (startup.error != null) {
+                each.onError(startup.error);
+            } else {
+                each.onComplete();
             }
-        });
+        }
+    }
+
+    /**
+     * Tells the listener once initialization is complete, straight away if it already is. May be called before
+     * initialize, as when fragments are restored with their activity.
+     * @param listener provides callback when manager is usable, on UI thread
+     */
+    public void whenInitialized(ApplicationManagerListener listener) {
+        if (mInitialized) {
+            listener.onComplete();
+        } else {
+            mInitializedListeners.add(listener);
+        }
+    }
+
+    // the store named by R.string.player_store, the database unless a build chooses another
+    private PlayerStore createStore(String name) {
+        if (STORE_GAME_LOG.equals(name)) return new GameLog(new File(mActivity.getFilesDir(), GAME_LOG_DIRECTORY));
+        if (STORE_MEMORY.equals(name)) return new MemoryPlayerStore();
+        return new SqlitePlayerStore(mActivity, mElo);
+    }
+
+    /**
+     * @return every player and their record, as of the last game created or completed. Safe to call from any thread.
+     */
+    public PlayerCache.Snapshot getPlayers() {
+        return mPlayerCache.getSnapshot();
     }
 
     /**
      * WARNING: Must be called from the main activity onDestroy method to ensure cleanup
      */
     public void destroy() {
-        DatabaseManager.getInstance().destroy();
+        mInitialized = false;
+        if (mStartup != null) mStartup.cancelled = true; // its tasks stop at their next step
+        if (mMoveJournal != null) mMoveJournal.close();
+        if (mStore != null) {
+            // after the startup task, if it is still opening the store
+            final PlayerStore store = mStore;
+            STORE_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    store.close();
+                }
+            });
+        }
     }
 
     /**
-     * Players are fetched and created as needed, and a new Game is returned. This game is not
-     * serialized to database until completed.
+     * Players are fetched and created as needed in the background, and a new Game is returned. This game is not
+     * serialized to database until completed, but its moves are journaled so it can be resumed.
      * @param playerName1 name of first player
      * @param playerName2 name of second player
      * @return a new Game object representing this game
      */
     public void createNewGame(String playerName1, String playerName2, final CreateGameListener listener) {
+        createNewGame(playerName1, playerName2, GameConfig.STANDARD, listener);
+    }
+
+    /**
+     * As above, for a game played on the board described by config
+     * @param playerName1 name of first player
+     * @param playerName2 name of second player
+     * @param config board size and line length, or null for standard tic tac toe
+     */
+    public void createNewGame(String playerName1, String playerName2, GameConfig config, final CreateGameListener listener) {
+        createNewGame(playerName1, playerName2, config, false, listener);
+    }
+
+    /**
+     * As above, optionally with the computer playing as player 2. The computer's name is reserved, so a human
+     * player given it is an error rather than being renamed.
+     * @param playerName1 name of first player
+     * @param playerName2 name of second player, ignored if computerOpponent is set
+     * @param config board size and line length, or null for standard tic tac toe
+     * @param computerOpponent true to play against the computer
+     * @param listener provides callback with the game, on UI thread
+     */
+    public void createNewGame(String playerName1, String playerName2, GameConfig config, final boolean computerOpponent,
+                              final CreateGameListener listener) {
+        GameConfig gameConfig = config == null ? GameConfig.STANDARD : config;
+        if (ComputerPlayer.DEFAULT_NAME.equals(playerName1)
+                || (!computerOpponent && ComputerPlayer.DEFAULT_NAME.equals(playerName2))) {
+            if (listener != null) listener.onError(mActivity.getString(R.string.name_reserved, ComputerPlayer.DEFAULT_NAME));
+            return;
+        }
+        if (computerOpponent) playerName2 = ComputerPlayer.DEFAULT_NAME;
         if (playerName1 == null || playerName1.length() == 0) playerName1 = "Default1";
         if (playerName2 == null || playerName2.length() == 0 || playerName1.equals(playerName2)) playerName2 = "Default2";
 
-        // find/create player, potentially writing new players to db
-        Player player1 = null;
-        Player player2 = null;
-        for (Player p : players) {
-            if (playerName1.equals(p.name)) player1 = p;
-            else if (playerName2.equals(p.name)) player2 = p;
+        // on the store's thread, as new players are written to it, and so it runs before a close destroy posts
+        new CreateGameTask(playerName1, playerName2, gameConfig, computerOpponent, listener).executeOnExecutor(STORE_EXECUTOR);
+    }
+
+    // finds or creates both players, then starts the game and its journal on the UI thread
+    private class CreateGameTask extends AsyncTask<Void, Void, Player[]> {
+        private final Startup mStartup = ApplicationManager.this.mStartup; // whose store to use, until cancelled
+        private final String mPlayerName1;
+        private final String mPlayerName2;
+        private final GameConfig mConfig;
+        private final boolean mComputerOpponent;
+        private final CreateGameListener mListener;
+
+        CreateGameTask(String playerName1, String playerName2, GameConfig config, boolean computerOpponent,
+                       CreateGameListener listener) {
+            mPlayerName1 = playerName1;
+            mPlayerName2 = playerName2;
+            mConfig = config;
+            mComputerOpponent = computerOpponent;
+            mListener = listener;
         }
-        // if not found, create new players and return from database
-        if (player1 == null) {
-            player1 = DatabaseManager.getInstance().createPlayer(playerName1);
+
+        @Override
+        protected Player[] doInBackground(Void... params) {
+            if (mStartup.cancelled) return null;
+            // potentially writing new players to the store. The game gets its own copies to update.
+            Player player1 = findOrCreatePlayer(mStartup.store, mPlayerName1);
+            Player player2 = findOrCreatePlayer(mStartup.store, mPlayerName2);
+            if (player1 == null || player2 == null) return null;
+            if (mComputerOpponent) player2 = new ComputerPlayer(player2, createComputerStrategy(mConfig));
+            return new Player[]{player1, player2};
+        }
+
+        @Override
+        protected void onPostExecute(Player[] players) {
+            if (mStartup.cancelled) return; // the listener's activity is gone
+            if (players == null) {
+                if (mListener != null) mListener.onError(mActivity.getString(R.string.create_game_failed));
+                return;
+            }
+            Game game = new Game(players[0], players[1], mConfig, xBmp, oBmp);
+            startJournal(game);
+            if (mListener != null) mListener.onComplete(game);
+        }
+    }
+
+    /**
+     * @return the game left unfinished when the process last died, to offer to resume, or null if there is none
+     */
+    public Game getUnfinishedGame() {
+        return mUnfinishedGame;
+    }
+
+    /**
+     * Carries on journaling the unfinished game, to be played again
+     * @return the game, as of its last move
+     */
+    public Game resumeUnfinishedGame() {
+        Game game = mUnfinishedGame;
+        mUnfinishedGame = null;
+        if (game != null) startJournal(game);
+        return game;
+    }
+
+    /**
+     * Forgets the unfinished game, as the players don't want to resume it
+     */
+    public void discardUnfinishedGame() {
+        if (mUnfinishedGame == null) return;
+        mUnfinishedGame = null;
+        mMoveJournal.finish();
+    }
+
+    /**
+     * Journals a move as soon as it is played, without waiting on the disk, so the game can be resumed if we die
+     * @param game game the move was played in
+     * @param position position claimed
+     */
+    public void moveClaimed(Game game, int position) {
+        if (mMoveJournal != null) mMoveJournal.append(position);
+    }
+
+    /**
+     * Forgets a game quit before it was completed, so it isn't offered to be resumed
+     * @param game game quit
+     */
+    public void gameQuit(Game game) {
+        if (mMoveJournal != null) mMoveJournal.finish();
+    }
+
+    // the game being played replaces any unfinished one in the journal
+    private void startJournal(Game game) {
+        mUnfinishedGame = null;
+        mMoveJournal.start(game);
+    }
+
+    // rebuilds the game left in the move journal, once players are loaded. A game that was already over when we
+    // died has had its result recorded, unless we died in the moment between, so it is never recorded again.
+    private Game restoreUnfinishedGame(MoveJournal journal) {
+        MoveJournal.Checkpoint checkpoint = journal.read();
+        if (checkpoint == null) return null;
+
+        Player player1 = restorePlayer(checkpoint.player1Id, checkpoint.player1Name, false, checkpoint.config);
+        Player player2 = restorePlayer(checkpoint.player2Id, checkpoint.player2Name, checkpoint.computerOpponent,
+                checkpoint.config);
+        Game game = new Game(player1, player2, checkpoint.config, checkpoint.startedAt, checkpoint.moves,
+                checkpoint.moves.length, xBmp, oBmp);
+        if (game.isComplete()) {
+            journal.finish();
+            return null;
         }
-        if (player2 == null) {
-            player2 = DatabaseManager.getInstance().createPlayer(playerName2);
+        return game;
+    }
+
+    /**
+     * Gives a game restored from a parcel, which only refers to its players, their records and its marks. Must be
+     * called once initialization is complete, as told by whenInitialized.
+     * @param game game to attach, unless it already is
+     */
+    public void attachRestoredGame(Game game) {
+        if (game.isAttached()) return;
+        GameConfig config = game.getConfig();
+        game.attach(restorePlayer(game.player1.id, game.player1.name, false, config),
+                restorePlayer(game.player2.id, game.player2.name, game.isComputerOpponent(), config), xBmp, oBmp);
+    }
+
+    // rebuilds a player of a game restored from a parcel or the journal, which refer to players rather than
+    // holding them. A player missing from the cache gets an empty record.
+    private Player restorePlayer(int id, String name, boolean computer, GameConfig config) {
+        Player cached = mPlayerCache.getSnapshot().findByName(name);
+        Player player = cached != null && cached.id == id ? new Player(cached) : new Player(id, name);
+        return computer ? new ComputerPlayer(player, createComputerStrategy(config)) : player;
+    }
+
+    // new players are added to the cache as they are written, so it never needs reloading. Background only, as
+    // creating or finding a player goes to the store.
+    private Player findOrCreatePlayer(PlayerStore store, String name) {
+        Player player = mPlayerCache.getSnapshot().findByName(name);
+        if (player == null) {
+            player = store.createPlayer(name);
+            if (player == null) player = store.findPlayer(name); // stored, but not yet in the cache
+            if (player == null) return null;
+            mPlayerCache.addPlayer(player);
         }
+        return new Player(player);
+    }
+
+    // computer players get a fresh strategy per game, as strategies hold search state
+    private MoveStrategy createComputerStrategy(GameConfig config) {
+        if (config.getSize() <= Tablebase.MAX_SIZE) return new SolvedGameStrategy(config);
+        return createSearchStrategy(config);
+    }
 
-        final Player finalPlayer1 = player1;
-        final Player finalPlayer2 = player2;
+    private MoveStrategy createSearchStrategy(GameConfig config) {
+        if (config.getSize() <= MAX_ALPHA_BETA_BOARD_SIZE) return new AlphaBetaStrategy(COMPUTER_THINKING_TIME_MS);
+        return new MonteCarloStrategy(COMPUTER_THINKING_TIME_MS);
+    }
 
-        // Database might have changed, and this is a small app example, so lets repopulate our in memory data to be sure its up to date
-        new LoadObjectsIntoMemoryTask().execute(new ApplicationManagerListener[]{new ApplicationManagerListener() {
-            @Override
-            public void onComplete() {
-                if (listener != null)
-                    listener.onComplete(finalPlayer1 == null || finalPlayer2 == null ? null : new Game(finalPlayer1, finalPlayer2, xBmp, oBmp));
+    /**
+     * The solved standard game, read from assets the first time it is asked for. Safe to call from any thread.
+     * @return the table, or null if it could not be loaded
+     */
+    public synchronized PerfectPlayTable getPerfectPlayTable() {
+        if (perfectPlayTable == null) {
+            InputStream in = null;
+            try {
+                in = mActivity.getAssets().open(PerfectPlayTable.ASSET_NAME);
+                perfectPlayTable = PerfectPlayTable.load(in);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to load perfect play table", e);
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                    }
+                }
             }
+        }
+        return perfectPlayTable;
+    }
 
-            @Override
-            public void onError(String msg) {
-                if (listener != null) listener.onError("Error creating game: " + msg);
+    /**
+     * The solved game for a config, memory mapped from the app's files. Tablebases shipped as assets are copied
+     * there the first time they are asked for, as assets can't be mapped in place. Safe to call from any thread,
+     * but may block on the copy, so not from the UI thread.
+     * @param config shape of the board
+     * @return the tablebase, or null if there is none for the config
+     */
+    public synchronized Tablebase getTablebase(GameConfig config) {
+        if (tablebases.containsKey(config)) return tablebases.get(config);
+
+        Tablebase tablebase = null;
+        String name = Tablebase.fileNameFor(config);
+        File file = new File(mActivity.getFilesDir(), name);
+        try {
+            if (!file.exists()) copyAsset(name, file);
+            tablebase = Tablebase.open(file);
+        } catch (FileNotFoundException e) {
+            Log.d(LOG_TAG, "No tablebase for " + config);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to load tablebase for " + config, e);
+            file.delete(); // copied again next launch
+        }
+        tablebases.put(config, tablebase);
+        return tablebase;
+    }
+
+    // copies via a temporary file, so an interrupted copy is never taken for a complete one
+    private void copyAsset(String name, File destination) throws IOException {
+        File partial = new File(destination.getPath() + ".partial");
+        InputStream in = mActivity.getAssets().open(name);
+        try {
+            OutputStream out = new FileOutputStream(partial);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int count;
+                while ((count = in.read(buffer)) > 0) out.write(buffer, 0, count);
+            } finally {
+                out.close();
             }
-        }});
+        } finally {
+            in.close();
+        }
+        if (!partial.renameTo(destination)) throw new IOException("Failed to move " + partial + " into place");
+    }
+
+    /**
+     * Plays from the perfect play table or a tablebase when there is one for the config, falling back to
+     * searching when there isn't
+     */
+    private class SolvedGameStrategy implements MoveStrategy {
+        private final GameConfig mConfig;
+        private MoveStrategy mSolved = null;
+        private MoveStrategy mFallback = null;
+
+        SolvedGameStrategy(GameConfig config) {
+            mConfig = config;
+        }
+
+        @Override
+        public int selectMove(Board board) {
+            if (mSolved == null) mSolved = GameConfig.STANDARD.equals(mConfig) ? getPerfectPlayTable() : getTablebase(mConfig);
+            if (mSolved != null) return mSolved.selectMove(board);
+
+            if (mFallback == null) mFallback = createSearchStrategy(mConfig);
+            return mFallback.selectMove(board);
+        }
     }
 
+    /**
+     * Records a completed game's result, and rates it from the players' current ratings. The same change is applied
+     * to the players in memory as is queued for the database, so the listener is called straight away, and the
+     * result is written in the background.
+     */
     public void gameCompleted(Game game, ApplicationManagerListener listener) {
         if (game == null) return; // nothing to do
 
-        // update our player data
+        PlayerCache.Snapshot players = mPlayerCache.getSnapshot();
+        Player player1 = players.findByName(game.player1.name);
+        Player player2 = players.findByName(game.player2.name);
+        double ratingChange = mElo.ratingChange(player1 != null ? player1.rating : game.player1.rating,
+                player2 != null ? player2.rating : game.player2.rating, game.getWinnerMark());
 
+        GameRecord record = game.createRecord(ratingChange);
+        mStore.recordGame(record);
+        mMoveJournal.finish(); // only once the result is safe
+        mPlayerCache.applyResults(record.getDeltas());
+        if (listener != null) listener.onComplete();
+    }
 
-        // serialize to db, callback when done
-        new SerializeGameResultTask().execute(new Object[]{game, listener});
+    /**
+     * Queries a page of the leaderboard from the store in the background, including every result recorded so far.
+     * May be called as soon as initialize has been, in which case it is read once the store is open, without
+     * waiting for the rest of initialization.
+     * @param ranking order to list players in, best first
+     * @param offset number of better ranked players to skip
+     * @param count most players to list
+     * @param listener provides callback with the page's players, on UI thread
+     */
+    public void loadLeaderboard(Ranking ranking, int offset, int count, LeaderboardListener listener) {
+        // on the pool, so it doesn't queue behind the startup tasks
+        new LoadLeaderboardTask(ranking, offset, count, listener).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
-    private class LoadObjectsIntoMemoryTask extends AsyncTask<ApplicationManagerListener, Void, ApplicationManagerListener> {
+    private class LoadLeaderboardTask extends AsyncTask<Void, Void, List<Player>> {
+        private final Startup mStartup = ApplicationManager.this.mStartup; // whose store to read, once it is open
+        private final Ranking mRanking;
+        private final int mOffset;
+        private final int mCount;
+        private final LeaderboardListener mListener;
+
+        LoadLeaderboardTask(Ranking ranking, int offset, int count, LeaderboardListener listener) {
+            mRanking = ranking;
+            mOffset = offset;
+            mCount = count;
+            mListener = listener;
+        }
+
         @Override
-        protected ApplicationManagerListener doInBackground(ApplicationManagerListener... listener) {
-            fetchPlayerData();
-            return listener.length > 0 ? listener[0] : null;
+        protected List<Player> doInBackground(Void... params) {
+            try {
+                mStartup.storeOpened.await();
+            } catch (InterruptedException e) {
+                return null;
+            }
+            if (mStartup.storeFailed || mStartup.cancelled) return null;
+            return mStartup.store.fetchLeaderboard(mRanking, mOffset, mCount);
         }
 
         @Override
-        protected void onPostExecute(ApplicationManagerListener listener) {
-            if (listener != null) listener.onComplete();
+        protected void onPostExecute(List<Player> players) {
+            if (players == null) {
+                mListener.onError("Leaderboard query failed");
+            } else {
+                mListener.onComplete(players);
+            }
         }
     }
 
-    // should be done on background thread!
-    private void fetchPlayerData() {
-        // load in players, and player records
-        players = new ArrayList<Player>();
-        List<Player> dbPlayers = DatabaseManager.getInstance().fetchAllPlayers();
-        if (dbPlayers != null) players.addAll(dbPlayers);
+    private class DecodeBitmapsTask extends AsyncTask<Void, Void, Void> {
+        private final Startup mStartup;
+        private final ApplicationManagerListener mListener;
+
+        DecodeBitmapsTask(Startup startup, ApplicationManagerListener listener) {
+            mStartup = startup;
+            mListener = listener;
+        }
+
+        @Override
+        protected Void doInBackground(Void... params) {
+            StartupTrace.Stage stage = mStartup.trace.begin("decode_bitmaps");
+            try {
+                // kept from an earlier activity if we outlived it, as when rotated
+                if (xBmp == null) xBmp = BitmapFactory.decodeResource(mActivity.getResources(), R.drawable.x);
+                if (oBmp == null) oBmp = BitmapFactory.decodeResource(mActivity.getResources(), R.drawable.o);
+            } finally {
+                mStartup.bitmapsDecoded.countDown();
+                stage.end();
+            }
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            startupTaskFinished(mStartup, mListener, null);
+        }
     }
 
-    private class SerializeGameResultTask extends AsyncTask<Object, Void, ApplicationManagerListener> {
+    private class LoadObjectsIntoMemoryTask extends AsyncTask<ApplicationManagerListener, Void, ApplicationManagerListener> {
+        private final Startup mStartup;
+        private IOException mError = null;
+
+        LoadObjectsIntoMemoryTask(Startup startup) {
+            mStartup = startup;
+        }
+
         @Override
-        protected ApplicationManagerListener doInBackground(Object... objects) {
-            Game game = (Game) objects[0];
-            ApplicationManagerListener listener = (ApplicationManagerListener) objects[1];
+        protected ApplicationManagerListener doInBackground(ApplicationManagerListener... listener) {
+            ApplicationManagerListener result = listener.length > 0 ? listener[0] : null;
+            if (mStartup.cancelled) {
+                mStartup.storeOpened.countDown(); // with nothing to read, as the store is closed next
+                return result;
+            }
+            try {
+                // catches up with any results lost when we last died, then populates our in memory data. Only
+                // needed once, as the cache is kept up to date from then on
+                StartupTrace.Stage stage = mStartup.trace.begin("open_store");
+                try {
+                    mStartup.store.open();
+                } catch (IOException e) {
+                    mStartup.storeFailed = true;
+                    throw e;
+                } finally {
+                    mStartup.storeOpened.countDown(); // leaderboards can be read from here on
+                    stage.end();
+                }
+                if (mStartup.cancelled) return result;
 
-            // serialize game results, then refresh our player data for sanity that we're up to date
-            DatabaseManager.getInstance().serializeGameResult(game);
-            fetchPlayerData();
+                stage = mStartup.trace.begin("load_players");
+                mPlayerCache.load(mStartup.store.fetchAllPlayers());
+                stage.end();
+                if (mStartup.cancelled) return result;
 
-            return listener;
+                // the game's players are only rebuilt as loaded once they are, and it needs the bitmaps
+                stage = mStartup.trace.begin("restore_game");
+                mStartup.bitmapsDecoded.await();
+                Game game = restoreUnfinishedGame(mStartup.journal);
+                if (!mStartup.cancelled) mUnfinishedGame = game;
+                stage.end();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to open player store", e);
+                mError = e;
+            } catch (InterruptedException e) {
+                Log.w(LOG_TAG, "Interrupted restoring unfinished game", e);
+            }
+            return result;
         }
 
         @Override
         protected void onPostExecute(ApplicationManagerListener listener) {
-            if (listener != null) listener.onComplete();
+            startupTaskFinished(mStartup, listener, mError == null ? null :
+                    "Initialization failed with error message: " + mError.getMessage());
         }
     }
 }
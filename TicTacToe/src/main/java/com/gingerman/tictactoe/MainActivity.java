@@ -1,10 +1,15 @@
 package com.gingerman.tictactoe;
 
 import android.app.Activity;
+import android.app.AlertDialog;
 import android.app.Fragment;
 import android.app.FragmentManager;
 import android.app.FragmentTransaction;
 import android.app.Service;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Gravity;
@@ -12,11 +17,15 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
-import android.widget.AdapterView;
+import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.BaseAdapter;
 import android.widget.Button;
-import android.widget.EditText;
+import android.widget.CheckBox;
+import android.widget.CursorAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
 import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.ProgressBar;
@@ -24,28 +33,46 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.gingerman.tictactoe.data.LeaderboardCursor;
+import com.gingerman.tictactoe.data.Ranking;
 import com.gingerman.tictactoe.fragments.GameFragment;
 import com.gingerman.tictactoe.model.Game;
+import com.gingerman.tictactoe.model.GameConfig;
 import com.gingerman.tictactoe.model.Player;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class MainActivity extends Activity implements GameFragment.OnGameListener {
     private static final String LOG_TAG = "MainActivity";
     private static final String GAME_FRAGMENT_TAG = "GameFragment";
     private static final String SPINNER_FRAGMENT_TAG = "SpinnerFragment";
+    private static final int RESULTS_PAGE_SIZE = 50; // players read into the results list at a time
 
     private ProgressBar mInitProgressBar = null;
     private TextView mResultsTitle = null;
     private ListView mResultsList = null;
-    private Spinner mPlayer1Spinner = null;
-    private Spinner mPlayer2Spinner = null;
+    private ResultsListAdapter mResultsAdapter = null;
+    private final LeaderboardCursor mResults = new LeaderboardCursor(); // every page read, shown by mResultsAdapter
+    private long mResultsVersion = -1; // version of the player cache the results list was last loaded at
+    private boolean mResultsRefreshing = false; // whether the pages read so far are being read again
+    private boolean mResultsLoading = false; // whether a further page of results is being read
+    private boolean mResultsComplete = false; // whether the results list holds every player
+    private AutoCompleteTextView mPlayer1Name = null;
+    private AutoCompleteTextView mPlayer2Name = null;
+    private Spinner mBoardSizeSpinner = null;
+    private CheckBox mComputerOpponentCheck = null;
+    private StartupTrace mStartupTrace = null; // logged once the game is playable and the results are shown
+    private int mStartupMilestonesLeft = 2;
 
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
+        mStartupTrace = new StartupTrace();
         super.onCreate(savedInstanceState);
+        StartupTrace.Stage stage = mStartupTrace.begin("inflate_layout");
         setContentView(R.layout.activity_main);
+        stage.end();
 
         if (savedInstanceState == null) {
             getFragmentManager().beginTransaction()
@@ -56,7 +83,7 @@ public class MainActivity extends Activity implements GameFragment.OnGameListene
         mInitProgressBar = (ProgressBar) findViewById(R.id.container_progress);
 
         // Initialize our game logic manager
-        ApplicationManager.getsInstance().initialize(this, new ApplicationManager.ApplicationManagerListener() {
+        ApplicationManager.getsInstance().initialize(this, mStartupTrace, new ApplicationManager.ApplicationManagerListener() {
             @Override
             public void onComplete() {
                 Log.d(LOG_TAG, "ApplicationManager initialization is complete.");
@@ -64,37 +91,28 @@ public class MainActivity extends Activity implements GameFragment.OnGameListene
                 // hide the progress bar that runs while we initialize
                 mInitProgressBar.setVisibility(View.GONE);
 
-                // inflate and initialize the player selection spinners
-                mPlayer1Spinner = (Spinner) findViewById(R.id.player_1_spn);
-                mPlayer2Spinner = (Spinner) findViewById(R.id.player_2_spn);
+                // player names, typed or picked from existing players as they are typed
+                PlayerPickerAdapter pickerAdapter = new PlayerPickerAdapter();
+                mPlayer1Name = (AutoCompleteTextView) findViewById(R.id.player_1_name);
+                mPlayer2Name = (AutoCompleteTextView) findViewById(R.id.player_2_name);
+                mPlayer1Name.setAdapter(pickerAdapter);
+                mPlayer2Name.setAdapter(pickerAdapter);
 
-                mPlayer1Spinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+                // playing the computer replaces the player 2 selection
+                mComputerOpponentCheck = (CheckBox) findViewById(R.id.computer_opponent_chk);
+                mComputerOpponentCheck.setOnClickListener(new View.OnClickListener() {
                     @Override
-                    public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                        findViewById(R.id.new_player_1).setVisibility(position == 0 ? View.VISIBLE : View.GONE);
-                        if (id == mPlayer2Spinner.getSelectedItemId()) mPlayer1Spinner.setSelection(0, true);
-                    }
-
-                    @Override
-                    public void onNothingSelected(AdapterView<?> parent) {
-                        findViewById(R.id.new_player_1).setVisibility(View.VISIBLE);
+                    public void onClick(View v) {
+                        findViewById(R.id.player_layout_2).setVisibility(mComputerOpponentCheck.isChecked() ? View.GONE : View.VISIBLE);
                     }
                 });
-                mPlayer2Spinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-                    @Override
-                    public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                        findViewById(R.id.new_player_2).setVisibility(position == 0 ? View.VISIBLE : View.GONE);
-                        if (id == mPlayer1Spinner.getSelectedItemId()) mPlayer2Spinner.setSelection(0, true);
-                    }
 
-                    @Override
-                    public void onNothingSelected(AdapterView<?> parent) {
-                        findViewById(R.id.new_player_2).setVisibility(View.VISIBLE);
-                    }
-                });
-
-                final EditText p1txt = (EditText) findViewById(R.id.player_1_new);
-                final EditText p2txt = (EditText) findViewById(R.id.player_2_new);
+                // board sizes to choose from, standard tic tac toe selected by default
+                mBoardSizeSpinner = (Spinner) findViewById(R.id.board_size_spn);
+                mBoardSizeSpinner.setAdapter(new ArrayAdapter<GameConfig>(
+                        getApplicationContext(),
+                        android.R.layout.simple_list_item_1,
+                        Arrays.asList(GameConfig.PRESETS)));
 
                 Button playBtn = (Button) findViewById(R.id.playbtn);
                 playBtn.setOnClickListener(new View.OnClickListener() {
@@ -106,13 +124,13 @@ public class MainActivity extends Activity implements GameFragment.OnGameListene
                         final ProgressBar progressBar = (ProgressBar) findViewById(R.id.play_btn_progress);
                         progressBar.setVisibility(View.VISIBLE);
 
-                        String player1Name = mPlayer1Spinner.getSelectedItemPosition() <= 0 ? p1txt.getText().toString() :
-                                (mPlayer1Spinner.getSelectedItem() == null ? null : mPlayer1Spinner.getSelectedItem().toString());
-                        String player2Name = mPlayer2Spinner.getSelectedItemPosition() <= 0 ? p2txt.getText().toString() :
-                                (mPlayer2Spinner.getSelectedItem() == null ? null : mPlayer2Spinner.getSelectedItem().toString());
+                        String player1Name = mPlayer1Name.getText().toString().trim();
+                        String player2Name = mPlayer2Name.getText().toString().trim();
+                        GameConfig config = (GameConfig) mBoardSizeSpinner.getSelectedItem();
 
                         // Create a new game
-                        ApplicationManager.getsInstance().createNewGame(player1Name, player2Name, new ApplicationManager.CreateGameListener() {
+                        ApplicationManager.getsInstance().createNewGame(player1Name, player2Name, config,
+                                mComputerOpponentCheck.isChecked(), new ApplicationManager.CreateGameListener() {
                             @Override
                             public void onComplete(Game game) {
                                 // Avoiding a really awkward Android-ism, I force close the soft keyboard to avoid it popping up.
@@ -124,14 +142,7 @@ public class MainActivity extends Activity implements GameFragment.OnGameListene
                                 }
 
                                 // launch new game into game fragment
-                                final Fragment fragment = GameFragment.newInstance(game);
-                                final FragmentManager manager = getFragmentManager();
-                                final FragmentTransaction transaction = manager.beginTransaction();
-
-                                manager.popBackStack(GAME_FRAGMENT_TAG, FragmentManager.POP_BACK_STACK_INCLUSIVE);
-                                transaction.add(R.id.container, fragment, GAME_FRAGMENT_TAG);
-                                transaction.addToBackStack(GAME_FRAGMENT_TAG);
-                                transaction.commit();
+                                showGame(game);
 
                                 // return button and spinner to pre-click positions
                                 progressBar.setVisibility(View.GONE);
@@ -141,41 +152,110 @@ public class MainActivity extends Activity implements GameFragment.OnGameListene
                             @Override
                             public void onError(String msg) {
                                 Log.e(LOG_TAG, msg);
-                                Toast.makeText(getApplicationContext(), "Create game failed!", 1500).show();
+                                Toast.makeText(getApplicationContext(), msg, 1500).show();
+
+                                // return button and spinner to pre-click positions, to try another name
+                                progressBar.setVisibility(View.GONE);
+                                ((Button) v).setText(R.string.play);
                             }
                         });
                     }
                 });
 
-                // setup the player name spinners
-                refreshSpinnerListAdapters();
-                // setup the results list
-                mResultsTitle = (TextView) findViewById(R.id.results_title);
-                mResultsList = (ListView) findViewById(R.id.results_list);
-                List<Player> players = ApplicationManager.getsInstance().players;
-                if (players.size() == 0) {
-                    mResultsList.setVisibility(View.GONE);
-                    mResultsTitle.setVisibility(View.GONE);
-                } else {
-                    mResultsList.setVisibility(View.VISIBLE);
-                    mResultsTitle.setVisibility(View.VISIBLE);
-
-                    mResultsList.setAdapter(new ResultsListAdapter(players));
-                    // avoid keyboard popping up by putting focus on the list
-                    mResultsList.requestFocus();
-                }
+                offerToResume();
+                startupMilestone("playable");
             }
 
             @Override
             public void onError(String msg) {
                 Log.e(LOG_TAG, msg);
+                startupMilestone("init_failed");
+            }
+        });
+
+        // the results are read as soon as the store is open, while the rest of initialization carries on
+        refreshResults();
+    }
+
+    // Helper method to set up the results list, hidden until there are results to show. Called once results
+    // arrive, by when the create game fragment's views exist.
+    private void setupResultsList() {
+        mResultsTitle = (TextView) findViewById(R.id.results_title);
+        mResultsList = (ListView) findViewById(R.id.results_list);
+        mResultsAdapter = new ResultsListAdapter();
+        mResultsList.setAdapter(mResultsAdapter);
+        mResultsList.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                // read the next page while there's still half a page left to scroll through
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - RESULTS_PAGE_SIZE / 2) {
+                    loadMoreResults();
+                }
             }
         });
+        mResultsList.setVisibility(View.GONE);
+        mResultsTitle.setVisibility(View.GONE);
+    }
+
+    // Helper method to record a step towards being fully started, logging the startup trace after the last
+    private void startupMilestone(String name) {
+        if (mStartupTrace == null) return;
+        mStartupTrace.mark(name);
+        if (--mStartupMilestonesLeft > 0) return;
+        mStartupTrace.log();
+        mStartupTrace = null;
+    }
+
+    // Helper method to show a game in the game fragment, replacing any game already shown
+    private void showGame(Game game) {
+        final Fragment fragment = GameFragment.newInstance(game);
+        final FragmentManager manager = getFragmentManager();
+        final FragmentTransaction transaction = manager.beginTransaction();
+
+        manager.popBackStack(GAME_FRAGMENT_TAG, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+        transaction.add(R.id.container, fragment, GAME_FRAGMENT_TAG);
+        transaction.addToBackStack(GAME_FRAGMENT_TAG);
+        transaction.commit();
+    }
+
+    // Helper method to offer to carry on with a game left unfinished when we were last killed
+    private void offerToResume() {
+        final Game game = ApplicationManager.getsInstance().getUnfinishedGame();
+        if (game == null) return;
+        if (getFragmentManager().findFragmentByTag(GAME_FRAGMENT_TAG) != null) {
+            // the game fragment was restored with the activity, as of when it was last saved. The journal has
+            // every move, so carry on from there instead.
+            showGame(ApplicationManager.getsInstance().resumeUnfinishedGame());
+            return;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.resume_title)
+                .setMessage(getString(R.string.resume_message, game.player1.name, game.player2.name))
+                .setPositiveButton(R.string.resume, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        showGame(ApplicationManager.getsInstance().resumeUnfinishedGame());
+                    }
+                })
+                .setNegativeButton(R.string.discard, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        ApplicationManager.getsInstance().discardUnfinishedGame();
+                    }
+                })
+                .setCancelable(false)
+                .show();
     }
 
     @Override
     protected void onDestroy() {
-        // Allow game logic manage to clean itself up
+        // Allow game logic manage to clean itself up, once the list has let go of its cursor
+        if (mResultsAdapter != null) mResultsAdapter.changeCursor(null);
         ApplicationManager.getsInstance().destroy();
         super.onDestroy();
     }
@@ -195,17 +275,9 @@ public class MainActivity extends Activity implements GameFragment.OnGameListene
         ApplicationManager.getsInstance().gameCompleted(game, new ApplicationManager.ApplicationManagerListener() {
             @Override
             public void onComplete() {
-                // ensure results are displayed
-                mResultsList.setVisibility(View.VISIBLE);
-                mResultsTitle.setVisibility(View.VISIBLE);
-
                 // update results
-                mResultsList.setAdapter(new ResultsListAdapter(ApplicationManager.getsInstance().players));
-                mResultsList.refreshDrawableState();
-                refreshSpinnerListAdapters(game.player1.name, game.player2.name);
-
-                // avoid keyboard popping up by putting focus on the list
-                mResultsList.requestFocus();
+                refreshResults();
+                showPlayerNames(game.player1.name, game.player2.name);
 
                 // close spinner
                 getFragmentManager().beginTransaction().remove(spinner).commit();
@@ -222,9 +294,10 @@ public class MainActivity extends Activity implements GameFragment.OnGameListene
     public void onGameQuit(Game game) {
         Log.d(LOG_TAG, "onGameQuit!");
         Toast.makeText(this, "Game quit: No winner declared!", 3000).show();
+        ApplicationManager.getsInstance().gameQuit(game);
         getFragmentManager().popBackStack(GAME_FRAGMENT_TAG, FragmentManager.POP_BACK_STACK_INCLUSIVE);
 
-        refreshSpinnerListAdapters(game.player1.name, game.player2.name);
+        showPlayerNames(game.player1.name, game.player2.name);
     }
 
     /**
@@ -243,83 +316,219 @@ public class MainActivity extends Activity implements GameFragment.OnGameListene
         }
     }
 
-    // Helper method to refresh both spinners
-    private void refreshSpinnerListAdapters() {
-        refreshSpinnerListAdapters(null, null);
-    }
-    private void refreshSpinnerListAdapters(String select1, String select2) {
-        if (mPlayer1Spinner == null || mPlayer2Spinner == null) return;
-
-        List<Player> players = ApplicationManager.getsInstance().players;
-        final List<String> names = new ArrayList<String>();
-        names.add("<Custom>");
-        if (players != null) {
-            for (Player player : players) {
-                if (player != null) names.add(player.name);
-            }
-        }
+    // Helper method to fill in the last played players, ready for a rematch
+    private void showPlayerNames(String name1, String name2) {
+        if (mPlayer1Name == null || mPlayer2Name == null) return;
 
-        // Simple array adapter for all player names
-        final ArrayAdapter<String> playerListAdapter = new ArrayAdapter<String>(
-                getApplicationContext(),
-                android.R.layout.simple_list_item_1,
-                names);
-
-        mPlayer1Spinner.setAdapter(playerListAdapter);
-        mPlayer2Spinner.setAdapter(playerListAdapter);
-
-        // select the last played players, if available.
-        if (select1 != null) mPlayer1Spinner.setSelection(names.indexOf(select1));
-        if (select2 != null) mPlayer2Spinner.setSelection(names.indexOf(select2));
-
-        if (names.size() == 1) {
-            mPlayer1Spinner.setVisibility(View.GONE);
-            mPlayer2Spinner.setVisibility(View.GONE);
-        } else {
-            mPlayer1Spinner.setVisibility(View.VISIBLE);
-            mPlayer2Spinner.setVisibility(View.VISIBLE);
-        }
+        mPlayer1Name.setText(name1, false);
+        if (!mComputerOpponentCheck.isChecked()) mPlayer2Name.setText(name2, false);
     }
 
-    private class ResultsListAdapter extends BaseAdapter {
-        private List<Player> mPlayers = null;
+    /**
+     * Suggests existing players' names starting with what has been typed. Suggestions come from the player
+     * cache's index as it is when filtered, so new players show up without the adapter being rebuilt.
+     */
+    private class PlayerPickerAdapter extends BaseAdapter implements Filterable {
+        private static final int MAX_SUGGESTIONS = 50;
 
-        public ResultsListAdapter(List<Player> players) {
-            mPlayers = new ArrayList<Player>(players.size());
-            mPlayers.addAll(players);
-        }
+        private List<String> mNames = new ArrayList<String>();
+        private final Filter mFilter = new Filter() {
+            @Override
+            protected FilterResults performFiltering(CharSequence prefix) {
+                // on a background thread, reading the current snapshot's immutable index
+                List<String> names = prefix == null || prefix.length() == 0 ? new ArrayList<String>() :
+                        ApplicationManager.getsInstance().getPlayers().index.namesStartingWith(prefix.toString(), MAX_SUGGESTIONS);
+                FilterResults results = new FilterResults();
+                results.values = names;
+                results.count = names.size();
+                return results;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void publishResults(CharSequence prefix, FilterResults results) {
+                mNames = (List<String>) results.values;
+                if (results.count > 0) notifyDataSetChanged();
+                else notifyDataSetInvalidated();
+            }
+        };
 
         @Override
         public int getCount() {
-            return mPlayers.size();
+            return mNames.size();
         }
 
         @Override
-        public Player getItem(int position) {
-            return mPlayers.get(position);
+        public String getItem(int position) {
+            return mNames.get(position);
         }
 
         @Override
         public long getItemId(int position) {
-            Player player = getItem(position);
-            return player != null ? player.id : 0;
+            return position;
         }
 
         @Override
         public View getView(int position, View convertView, ViewGroup parent) {
-            Player player = getItem(position);
-            if (player == null) return null;
+            TextView row = (TextView) (convertView != null ? convertView :
+                    getLayoutInflater().inflate(android.R.layout.simple_dropdown_item_1line, parent, false));
+            row.setText(getItem(position));
+            return row;
+        }
+
+        @Override
+        public Filter getFilter() {
+            return mFilter;
+        }
+    }
+
+    // Helper method to read the results list's rows again in the background, if players have changed since they
+    // were read. Every row read so far is read again, in one query, and written over in place, so the list stays
+    // where it was scrolled to and the order stays consistent however far down it is.
+    private void refreshResults() {
+        final long version = ApplicationManager.getsInstance().getPlayers().version;
+        if (version == mResultsVersion || mResultsRefreshing) return;
+        mResultsRefreshing = true;
+        final int count = Math.max(RESULTS_PAGE_SIZE, mResults.getCount());
+
+        ApplicationManager.getsInstance().loadLeaderboard(Ranking.RATING, 0, count,
+                new ApplicationManager.LeaderboardListener() {
+            @Override
+            public void onComplete(List<Player> players) {
+                mResultsRefreshing = false;
+                if (isDestroyed()) return;
+                if (mResultsAdapter == null) setupResultsList();
+                mResultsVersion = version;
+                mResultsComplete = players.size() < count;
+                mResults.setRows(0, players);
+                mResultsAdapter.notifyDataSetChanged();
+
+                // ensure results are displayed, once there are any
+                int visibility = mResults.getCount() > 0 ? View.VISIBLE : View.GONE;
+                mResultsList.setVisibility(visibility);
+                mResultsTitle.setVisibility(visibility);
+
+                // avoid keyboard popping up by putting focus on the list
+                mResultsList.requestFocus();
+                startupMilestone("results_shown");
+
+                refreshResults(); // in case players changed again while these were read
+            }
+
+            @Override
+            public void onError(String msg) {
+                mResultsRefreshing = false;
+                Log.e(LOG_TAG, msg);
+                startupMilestone("results_failed");
+            }
+        });
+    }
+
+    // Helper method to add the next page of players to the results list, once it has been scrolled near its end
+    private void loadMoreResults() {
+        if (mResultsLoading || mResultsRefreshing || mResultsComplete) return;
+        mResultsLoading = true;
+        final long version = mResultsVersion;
+        final int offset = mResults.getCount();
+
+        ApplicationManager.getsInstance().loadLeaderboard(Ranking.RATING, offset, RESULTS_PAGE_SIZE,
+                new ApplicationManager.LeaderboardListener() {
+            @Override
+            public void onComplete(List<Player> page) {
+                mResultsLoading = false;
+                // rows read again since may have moved, so this page may not follow on from them
+                if (isDestroyed() || mResultsRefreshing || version != mResultsVersion) return;
+                mResultsComplete = page.size() < RESULTS_PAGE_SIZE;
+                mResults.setRows(offset, page);
+                mResultsAdapter.notifyDataSetChanged();
+            }
 
-            LayoutInflater inflater = getLayoutInflater();
-            final View resultRow = inflater.inflate(R.layout.result_row, null);
+            @Override
+            public void onError(String msg) {
+                mResultsLoading = false;
+                Log.e(LOG_TAG, msg);
+            }
+        });
+    }
 
-            final TextView playerName = (TextView) resultRow.findViewById(R.id.result_player_name);
-            playerName.setText(player.name);
-            final TextView playerStats = (TextView) resultRow.findViewById(R.id.result_player_stats);
-            playerStats.setText(String.format("%s-%s-%s", player.wins, player.losses, player.draws));
+    /**
+     * Rows of the results list, from mResults as it is read a page of players at a time, rather than a copy of
+     * every player.
+     * Row views are recycled with their child views held in a ViewHolder, and text is copied into buffers kept
+     * by each holder, so scrolling doesn't allocate.
+     */
+    private class ResultsListAdapter extends CursorAdapter {
+        private int mNameColumn;
+        private int mWinsColumn;
+        private int mLossesColumn;
+        private int mDrawsColumn;
+        private int mRatingColumn;
+
+        public ResultsListAdapter() {
+            super(MainActivity.this, null, 0); // no content observer: rows are written in place, then notified
+            swapCursor(mResults);
+        }
 
+        @Override
+        public Cursor swapCursor(Cursor cursor) {
+            if (cursor != null) {
+                mNameColumn = cursor.getColumnIndexOrThrow(Player.DB_FIELDS.name);
+                mWinsColumn = cursor.getColumnIndexOrThrow(Player.DB_FIELDS.wins);
+                mLossesColumn = cursor.getColumnIndexOrThrow(Player.DB_FIELDS.losses);
+                mDrawsColumn = cursor.getColumnIndexOrThrow(Player.DB_FIELDS.draws);
+                mRatingColumn = cursor.getColumnIndexOrThrow(Player.DB_FIELDS.rating);
+            }
+            return super.swapCursor(cursor);
+        }
+
+        @Override
+        public View newView(Context context, Cursor cursor, ViewGroup parent) {
+            View resultRow = getLayoutInflater().inflate(R.layout.result_row, parent, false);
+            resultRow.setTag(new ViewHolder(resultRow));
             return resultRow;
         }
+
+        @Override
+        public void bindView(View view, Context context, Cursor cursor) {
+            ViewHolder holder = (ViewHolder) view.getTag();
+
+            cursor.copyStringToBuffer(mNameColumn, holder.name);
+            holder.playerName.setText(holder.name.data, 0, holder.name.sizeCopied);
+
+            // wins-losses-draws, then the rating to the nearest point
+            int length = appendInt(holder.stats, 0, cursor.getInt(mWinsColumn));
+            holder.stats[length++] = '-';
+            length = appendInt(holder.stats, length, cursor.getInt(mLossesColumn));
+            holder.stats[length++] = '-';
+            length = appendInt(holder.stats, length, cursor.getInt(mDrawsColumn));
+            holder.stats[length++] = ' ';
+            holder.stats[length++] = ' ';
+            length = appendInt(holder.stats, length, (int) Math.max(0, Math.round(cursor.getDouble(mRatingColumn))));
+            holder.playerStats.setText(holder.stats, 0, length);
+        }
+    }
+
+    private static class ViewHolder {
+        final TextView playerName;
+        final TextView playerStats;
+        final CharArrayBuffer name = new CharArrayBuffer(32); // grown by the cursor if a name is longer
+        final char[] stats = new char[4 * 10 + 4]; // three counts, a rating and their separators
+
+        ViewHolder(View resultRow) {
+            playerName = (TextView) resultRow.findViewById(R.id.result_player_name);
+            playerStats = (TextView) resultRow.findViewById(R.id.result_player_stats);
+        }
+    }
+
+    // writes a count or rating, which is never negative, in decimal at offset, returning the offset after it
+    private static int appendInt(char[] buffer, int offset, int value) {
+        int end = offset;
+        for (int remaining = value; remaining >= 10; remaining /= 10) end++;
+        for (int i = end; i >= offset; --i) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end + 1;
     }
 
     // custom built spinner dialog to display while we're thinking
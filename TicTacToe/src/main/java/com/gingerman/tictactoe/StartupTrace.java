@@ -0,0 +1,78 @@
+package com.gingerman.tictactoe;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the stages of starting up, from the activity being created, and logs them as one report, so changes to
+ * the time until the game can be played show up in the logs under LOG_TAG. Stages may run on any thread, and
+ * overlap, so each is reported with its thread, and when it started as well as how long it took.
+ */
+public class StartupTrace {
+    public static final String LOG_TAG = "StartupTrace";
+
+    private final long mStartNanos = System.nanoTime();
+    private final List<Stage> mStages = new ArrayList<Stage>(); // guarded by this, in the order they ended
+    private boolean mLogged = false; // guarded by this
+
+    /**
+     * A stage in progress, ended by the code it times
+     */
+    public class Stage {
+        private final String mName;
+        private final String mThread = Thread.currentThread().getName();
+        private final long mBeginNanos = System.nanoTime();
+        private long mEndNanos = 0;
+
+        private Stage(String name) {
+            mName = name;
+        }
+
+        /**
+         * Records the stage as ended now. Only the first call counts.
+         */
+        public void end() {
+            synchronized (StartupTrace.this) {
+                if (mEndNanos != 0) return;
+                mEndNanos = System.nanoTime();
+                mStages.add(this);
+            }
+        }
+    }
+
+    /**
+     * @param name name of the stage, as it is to be logged
+     * @return the stage, begun now on the calling thread
+     */
+    public Stage begin(String name) {
+        return new Stage(name);
+    }
+
+    /**
+     * Records a moment, such as the game becoming playable, as a stage taking no time
+     * @param name name of the moment, as it is to be logged
+     */
+    public void mark(String name) {
+        begin(name).end();
+    }
+
+    /**
+     * Logs every stage ended so far, once. Stages ended later are left out.
+     */
+    public synchronized void log() {
+        if (mLogged) return;
+        mLogged = true;
+
+        Log.i(LOG_TAG, String.format("%d stages in %d ms", mStages.size(), toMillis(System.nanoTime() - mStartNanos)));
+        for (Stage stage : mStages) {
+            Log.i(LOG_TAG, String.format("%-20s at %5d ms took %5d ms on %s", stage.mName,
+                    toMillis(stage.mBeginNanos - mStartNanos), toMillis(stage.mEndNanos - stage.mBeginNanos), stage.mThread));
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+}
@@ -1,23 +1,43 @@
 package com.gingerman.tictactoe.data;
 
-import android.app.Activity;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.os.AsyncTask;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
-import com.gingerman.tictactoe.ApplicationManager;
 import com.gingerman.tictactoe.model.Game;
+import com.gingerman.tictactoe.model.GameConfig;
+import com.gingerman.tictactoe.model.MoveCodec;
 import com.gingerman.tictactoe.model.Player;
+import com.gingerman.tictactoe.rating.EloRating;
+import com.gingerman.tictactoe.rating.GameHistory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Encapsulates interaction with the database into an easy to use manager object
+ *
+ * A single connection is opened at initialization and kept until destroy, in write ahead logging mode so reads
+ * don't wait on writes. Statements run for every game are compiled once, and are used with bound arguments.
+ * Public methods are synchronized, as compiled statements can't be shared between threads, except the queries
+ * that only read through rawQuery, which take a connection of their own from the pool so they can run alongside
+ * each other and writes, as they do while starting up. Those hold a read lock instead, which destroy waits to
+ * take the write lock of, so the connection isn't closed under them.
+ *
+ * Anything still calling in once destroy has run, such as a delayed flush of results or a task left pending by
+ * a destroyed activity, finds no connection and gets an empty result, or has its write dropped.
  */
 public class DatabaseManager {
     private static final String LOG_TAG = "DatabaseManager";
@@ -27,11 +47,44 @@ public class DatabaseManager {
      *
      * Historic db versions:
      * 1. Initial impl
+     * 2. result_sequence table, for replaying journaled results exactly once
+     * 3. played and win_rate columns, and an index per Ranking
+     * 4. rating column, and its Ranking's index
+     * 5. game table, indexed by each player then their opponent, and rating_parameters table
+     * 6. base_rating column, and rating_parameters' history_start, for rerating from where the game history starts
      */
-    private static final int DB_VERSION = 1;
+    private static final int DB_VERSION = 6;
     private static final String DB_NAME = "tictactoe.db";
-    private Activity mActivity;
+    private static final String SELECT_ALL_PLAYERS_SQL = "SELECT * FROM " + Player.DB_FIELDS.tableName;
+    private static final String FIND_PLAYER_SQL = String.format("%s WHERE %s = ?", SELECT_ALL_PLAYERS_SQL, Player.DB_FIELDS.name);
+    private static final String RESULT_SEQUENCE_TABLE = "result_sequence";
+    private static final String RATING_PARAMETERS_TABLE = "rating_parameters";
+    private static final String SELECT_GAMES_SQL = "SELECT * FROM " + GameRecord.DB_FIELDS.tableName;
+    // each side of the OR is read from the index led by that column
+    private static final String PLAYER_GAMES_SQL = String.format("%s WHERE %s = ?1 OR %s = ?1 ORDER BY %s DESC LIMIT ?2",
+            SELECT_GAMES_SQL, GameRecord.DB_FIELDS.player1, GameRecord.DB_FIELDS.player2, GameRecord.DB_FIELDS.id);
+    private static final String HEAD_TO_HEAD_SQL = String.format("%1$s WHERE %2$s = ?1 AND %3$s = ?2 OR %2$s = ?2 AND %3$s = ?1 ORDER BY %4$s",
+            SELECT_GAMES_SQL, GameRecord.DB_FIELDS.player1, GameRecord.DB_FIELDS.player2, GameRecord.DB_FIELDS.id);
+    // games after the rating parameters' history_start, which bound the first argument
+    private static final String GAME_HISTORY_SQL = String.format("SELECT %s, %s, %s FROM %s WHERE %s > ? ORDER BY %s",
+            GameRecord.DB_FIELDS.player1, GameRecord.DB_FIELDS.player2, GameRecord.DB_FIELDS.winner,
+            GameRecord.DB_FIELDS.tableName, GameRecord.DB_FIELDS.id, GameRecord.DB_FIELDS.id);
+    // followed by the ranking's ORDER BY, then the page's bounds as arguments
+    private static final String LEADERBOARD_SQL = SELECT_ALL_PLAYERS_SQL + " ORDER BY %s LIMIT ? OFFSET ?";
+
     private DatabaseOpenHelper mDbHelper = null;
+    private volatile SQLiteDatabase mDb = null;
+    private final ReadWriteLock mCloseLock = new ReentrantReadWriteLock(); // read by unsynchronized queries
+
+    // compiled once at initialization, and reused for the life of the connection
+    private SQLiteStatement mInsertPlayer = null;
+    private SQLiteStatement mUpdatePlayerStats = null;
+    private SQLiteStatement mSelectResultSequence = null;
+    private SQLiteStatement mUpdateResultSequence = null;
+    private SQLiteStatement mInsertGame = null;
+    private final Map<Ranking, SQLiteStatement> mSelectRank = new HashMap<Ranking, SQLiteStatement>();
+
+    private static final EloRating ELO = new EloRating();
 
     private static DatabaseManager sInstance = null;
 
@@ -49,44 +102,61 @@ public class DatabaseManager {
     }
 
     /**
-     * WARNING: This initializer must be called before the instance is used
-     * @param activity activity context we are running in
-     * @param listener provides callback when manager is usable, on ui thread
-     */
-    public void initialize(Activity activity, ApplicationManager.ApplicationManagerListener listener) {
-        mActivity = activity;
-
-        new DatabaseCreationTask().execute(new ApplicationManager.ApplicationManagerListener[]{listener});
-    }
-
-    /**
-     * WARNING: Must be called from the main activity onDestroy method to ensure cleanup
+     * WARNING: This must be called before the instance is used, on a background thread
+     * @param context context to open the database in
      */
-    public void destroy() {
-        mDbHelper.close();
+    public synchronized void open(Context context) {
+        mDbHelper = new DatabaseOpenHelper(context.getApplicationContext(), DB_NAME, null, DB_VERSION);
+        mDb = mDbHelper.getWritableDatabase();
+        compileStatements();
     }
 
     /**
-     * AsyncTask to perform the db intialization in the background thread, and respond when it is ready to use via listener callback
+     * WARNING: Must be called once the database is no longer needed, to ensure cleanup
      */
-    private class DatabaseCreationTask extends AsyncTask<ApplicationManager.ApplicationManagerListener, Void, ApplicationManager.ApplicationManagerListener> {
-        @Override
-        protected ApplicationManager.ApplicationManagerListener doInBackground(ApplicationManager.ApplicationManagerListener... listener) {
-            mDbHelper = new DatabaseOpenHelper(mActivity.getApplicationContext(), DB_NAME, null, DB_VERSION);
-            return listener.length > 0 ? listener[0] : null;
+    public synchronized void destroy() {
+        mCloseLock.writeLock().lock(); // once queries already running finish
+        try {
+            if (mInsertPlayer != null) mInsertPlayer.close();
+            if (mUpdatePlayerStats != null) mUpdatePlayerStats.close();
+            if (mSelectResultSequence != null) mSelectResultSequence.close();
+            if (mUpdateResultSequence != null) mUpdateResultSequence.close();
+            if (mInsertGame != null) mInsertGame.close();
+            for (SQLiteStatement statement : mSelectRank.values()) statement.close();
+            mSelectRank.clear();
+            mInsertPlayer = null;
+            mUpdatePlayerStats = null;
+            mSelectResultSequence = null;
+            mUpdateResultSequence = null;
+            mInsertGame = null;
+            mDb = null;
+            if (mDbHelper != null) mDbHelper.close(); // closes the connection too
+        } finally {
+            mCloseLock.writeLock().unlock();
         }
+    }
 
-        @Override
-        protected void onPostExecute(ApplicationManager.ApplicationManagerListener listener) {
-            if (listener != null) {
-                listener.onComplete();
-            }
-        }
+    // statements run for every game, compiled once for the life of the connection
+    private void compileStatements() {
+        mInsertPlayer = mDb.compileStatement(String.format("INSERT INTO %s (%s) VALUES (?)",
+                Player.DB_FIELDS.tableName, Player.DB_FIELDS.name));
+        // ranking columns are kept up to date in the same statement, from the old values plus the changes
+        mUpdatePlayerStats = mDb.compileStatement(String.format("UPDATE %1$s SET %2$s = %2$s + ?1, %3$s = %3$s + ?2, %4$s = %4$s + ?3, "
+                        + "%5$s = %5$s + ?1 + ?2 + ?3, %6$s = (%2$s + ?1) * 1.0 / max(%5$s + ?1 + ?2 + ?3, 1), %7$s = %7$s + ?5 WHERE %8$s = ?4",
+                Player.DB_FIELDS.tableName, Player.DB_FIELDS.wins, Player.DB_FIELDS.losses, Player.DB_FIELDS.draws,
+                Player.DB_FIELDS.played, Player.DB_FIELDS.winRate, Player.DB_FIELDS.rating, Player.DB_FIELDS.id));
+        mSelectResultSequence = mDb.compileStatement(String.format("SELECT applied FROM %s WHERE id = 0", RESULT_SEQUENCE_TABLE));
+        mUpdateResultSequence = mDb.compileStatement(String.format("UPDATE %s SET applied = max(applied, ?) WHERE id = 0", RESULT_SEQUENCE_TABLE));
+        mInsertGame = mDb.compileStatement(String.format("INSERT INTO %s (%s, %s, %s, %s, %s, %s, %s) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                GameRecord.DB_FIELDS.tableName, GameRecord.DB_FIELDS.player1, GameRecord.DB_FIELDS.player2,
+                GameRecord.DB_FIELDS.winner, GameRecord.DB_FIELDS.config, GameRecord.DB_FIELDS.startedAt,
+                GameRecord.DB_FIELDS.finishedAt, GameRecord.DB_FIELDS.moves));
+        for (Ranking ranking : Ranking.ALL) mSelectRank.put(ranking, mDb.compileStatement(ranking.getRankSql()));
     }
 
     /**
      * Custom OpenHelper class to create our db tables, handle upgrades, etc.
-     * For purposes of this exercise, this Helper is very simple and will overwrite stats on an upgrade.
+     * New databases are created at version 1 and brought up to date by the same migrations as upgrades.
      */
 
     //
@@ -95,9 +165,15 @@ public class DatabaseManager {
             super(context, name, factory, version);
         }
 
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            db.enableWriteAheadLogging();
+        }
+
         @Override
         public void onCreate(SQLiteDatabase db) {
             createDatabase(db);
+            migrate(db, 1);
         }
 
         private void createDatabase(SQLiteDatabase db) {
@@ -124,24 +200,94 @@ public class DatabaseManager {
         }
 
         /**
-         * WARNING: This implementation blows away the full db, and starts from scratch.
-         * Should include logic to upgrade based on version numbers, but you know that already...
+         * Migrates one version at a time, keeping players and their records
          * @param db
          * @param oldVersion
          * @param newVersion
          */
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            migrate(db, oldVersion);
+        }
+
+        // applies every migration after fromVersion, in order
+        private void migrate(SQLiteDatabase db, int fromVersion) {
             try {
                 db.beginTransaction();
 
-                db.execSQL("DROP TABLE IF EXISTS game;");
-                db.execSQL(String.format("DROP TABLE IF EXISTS player;", Player.DB_FIELDS.tableName));
+                if (fromVersion < 2) {
+                    // single row holding the sequence number of the last journaled result applied
+                    execute(db, String.format("CREATE TABLE %s ( id INTEGER PRIMARY KEY CHECK (id = 0), applied INTEGER NOT NULL );",
+                            RESULT_SEQUENCE_TABLE));
+                    execute(db, String.format("INSERT INTO %s (id, applied) VALUES (0, 0);", RESULT_SEQUENCE_TABLE));
+                }
+                if (fromVersion < 3) {
+                    // columns to rank by, filled in from existing records, and an index to read each ranking from
+                    String table = Player.DB_FIELDS.tableName;
+                    execute(db, String.format("ALTER TABLE %s ADD COLUMN %s INTEGER DEFAULT 0;", table, Player.DB_FIELDS.played));
+                    execute(db, String.format("ALTER TABLE %s ADD COLUMN %s REAL DEFAULT 0;", table, Player.DB_FIELDS.winRate));
+                    execute(db, String.format("UPDATE %1$s SET %2$s = %3$s + %4$s + %5$s, %6$s = %3$s * 1.0 / max(%3$s + %4$s + %5$s, 1);",
+                            table, Player.DB_FIELDS.played, Player.DB_FIELDS.wins, Player.DB_FIELDS.losses,
+                            Player.DB_FIELDS.draws, Player.DB_FIELDS.winRate));
+                    for (Ranking ranking : new Ranking[]{Ranking.WINS, Ranking.WIN_RATE, Ranking.PLAYED}) {
+                        execute(db, ranking.getCreateIndexSql());
+                    }
+                }
+                if (fromVersion < 4) {
+                    // existing players start from the initial rating, as there is no history to rate them from
+                    execute(db, String.format("ALTER TABLE %s ADD COLUMN %s REAL DEFAULT %s;", Player.DB_FIELDS.tableName,
+                            Player.DB_FIELDS.rating, EloRating.INITIAL_RATING));
+                    execute(db, Ranking.RATING.getCreateIndexSql());
+                }
+                if (fromVersion < 5) {
+                    // one row per game from now on, its moves either packed into an integer or a blob of varints,
+                    // so the column is left untyped. Earlier games were never recorded.
+                    String table = GameRecord.DB_FIELDS.tableName;
+                    StringBuilder sql = new StringBuilder();
+                    sql.append(String.format("CREATE TABLE %s (", table));
+                    sql.append(" id INTEGER PRIMARY KEY, ");
+                    sql.append(" player1 INTEGER NOT NULL, ");
+                    sql.append(" player2 INTEGER NOT NULL, ");
+                    sql.append(" winner INTEGER NOT NULL, ");
+                    sql.append(" config INTEGER NOT NULL, ");
+                    sql.append(" started_at INTEGER NOT NULL, ");
+                    sql.append(" finished_at INTEGER NOT NULL, ");
+                    sql.append(" moves NOT NULL ");
+                    sql.append(");");
+                    execute(db, sql.toString());
+                    // a player's games, and with the second column a pair's, whichever side they played
+                    execute(db, String.format("CREATE INDEX %1$s_by_%2$s ON %1$s (%2$s, %3$s);", table,
+                            GameRecord.DB_FIELDS.player1, GameRecord.DB_FIELDS.player2));
+                    execute(db, String.format("CREATE INDEX %1$s_by_%2$s ON %1$s (%2$s, %3$s);", table,
+                            GameRecord.DB_FIELDS.player2, GameRecord.DB_FIELDS.player1));
+
+                    // single row holding the k factor the stored ratings were computed with
+                    execute(db, String.format("CREATE TABLE %s ( id INTEGER PRIMARY KEY CHECK (id = 0), k_factor REAL NOT NULL );",
+                            RATING_PARAMETERS_TABLE));
+                    execute(db, String.format("INSERT INTO %s (id, k_factor) VALUES (0, %s);", RATING_PARAMETERS_TABLE,
+                            EloRating.DEFAULT_K_FACTOR));
+                }
+                if (fromVersion < 6) {
+                    // players who won, lost or drew before games were recorded can't be rerated from the game
+                    // history alone. If there are any, every player's rating as of now becomes the baseline rerating
+                    // starts from, and only games from here on are replayed, keeping what earlier games earned at
+                    // the k factor of the day. Otherwise the whole history is replayed, from the initial rating.
+                    String players = Player.DB_FIELDS.tableName;
+                    String games = GameRecord.DB_FIELDS.tableName;
+                    execute(db, String.format("ALTER TABLE %s ADD COLUMN %s REAL DEFAULT %s;", players,
+                            Player.DB_FIELDS.baseRating, EloRating.INITIAL_RATING));
+                    execute(db, String.format("ALTER TABLE %s ADD COLUMN history_start INTEGER NOT NULL DEFAULT 0;",
+                            RATING_PARAMETERS_TABLE));
+                    String unrecorded = String.format("EXISTS (SELECT 1 FROM %1$s WHERE %2$s > (SELECT count(*) FROM %3$s "
+                            + "WHERE %4$s = %1$s.%6$s OR %5$s = %1$s.%6$s))", players, Player.DB_FIELDS.played, games,
+                            GameRecord.DB_FIELDS.player1, GameRecord.DB_FIELDS.player2, Player.DB_FIELDS.id);
+                    execute(db, String.format("UPDATE %s SET %s = %s WHERE %s;", players, Player.DB_FIELDS.baseRating,
+                            Player.DB_FIELDS.rating, unrecorded));
+                    execute(db, String.format("UPDATE %s SET history_start = (SELECT ifnull(max(%s), 0) FROM %s) WHERE %s;",
+                            RATING_PARAMETERS_TABLE, GameRecord.DB_FIELDS.id, games, unrecorded));
+                }
 
                 db.setTransactionSuccessful();
-
-                // now recreate
-                createDatabase(db);
             } finally {
                 db.endTransaction();
             }
@@ -149,56 +295,269 @@ public class DatabaseManager {
     }
 
     /**
-     * @return a List of all Players known to the database
+     * @return a List of all Players known to the database, or null if there are none or it has been destroyed
      */
     public List<Player> fetchAllPlayers() {
-        SQLiteDatabase db = mDbHelper.getReadableDatabase();
-
+        mCloseLock.readLock().lock();
         try {
-            StringBuilder sql = new StringBuilder();
-            sql.append("SELECT * ");
-            sql.append(String.format(" FROM   %s; ", Player.DB_FIELDS.tableName));
+            if (mDb == null) return null;
+            // the sql never changes, so the connection's statement cache compiles it only once
+            Cursor cursor = mDb.rawQuery(SELECT_ALL_PLAYERS_SQL, null);
+            if (cursor == null) return null;
 
-            Cursor cursor = execute(db, sql.toString(), null);
-            if (cursor == null || !cursor.moveToFirst()) return null;
+            try {
+                if (!cursor.moveToFirst()) return null;
 
-            List<Player> players = new ArrayList<Player>();
-            while (!cursor.isAfterLast()) {
-                players.add(new Player(cursor));
-                cursor.moveToNext();
+                List<Player> players = new ArrayList<Player>();
+                while (!cursor.isAfterLast()) {
+                    players.add(readPlayer(cursor));
+                    cursor.moveToNext();
+                }
+
+                return players;
+            } finally {
+                cursor.close();
             }
+        } finally {
+            mCloseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param name name of the player to find
+     * @return the player, or null if there is none by that name
+     */
+    public synchronized Player findPlayer(String name) {
+        if (mDb == null) return null;
+        // name is unique, so this is a lookup in its index
+        Cursor cursor = mDb.rawQuery(FIND_PLAYER_SQL, new String[]{name});
+        if (cursor == null) return null;
 
-            return players;
+        try {
+            return cursor.moveToFirst() ? readPlayer(cursor) : null;
         } finally {
-            db.close();
+            cursor.close();
         }
     }
 
     /**
-     * @param name name of the player to create (record will be empty)
-     * @return A new, db backed up, Player object representing the new player requested
+     * A page of the leaderboard, read from the ranking's index in order, so it costs as many rows as it skips and
+     * returns rather than a sort of the table
+     * @param ranking order to list players in, best first
+     * @param offset number of better ranked players to skip
+     * @param count most players to return
+     * @return the players ranked offset + 1 onwards, best first, or none once the database has been destroyed
      */
-    public Player createPlayer(String name) {
-        SQLiteDatabase db = mDbHelper.getWritableDatabase();
-        Player player = null;
+    public List<Player> fetchLeaderboard(Ranking ranking, int offset, int count) {
+        mCloseLock.readLock().lock();
         try {
-            db.beginTransaction();
+            if (mDb == null) return new ArrayList<Player>();
+            // the sql is fixed per ranking, so the connection's statement cache compiles each only once
+            Cursor cursor = mDb.rawQuery(String.format(LEADERBOARD_SQL, ranking.getOrderBy()),
+                    new String[]{String.valueOf(count), String.valueOf(offset)});
+            List<Player> players = new ArrayList<Player>(cursor != null ? cursor.getCount() : 0);
+            if (cursor == null) return players;
 
-            ContentValues contentValues = new ContentValues(1);
-            contentValues.put(Player.DB_FIELDS.name, name);
-            int id = (int) db.insertWithOnConflict(Player.DB_FIELDS.tableName, null, contentValues, SQLiteDatabase.CONFLICT_ROLLBACK);
-            if (id >= 0) {
-                player = new Player(id, name);
+            try {
+                while (cursor.moveToNext()) players.add(readPlayer(cursor));
+                return players;
+            } finally {
+                cursor.close();
             }
+        } finally {
+            mCloseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param ranking order to rank players in
+     * @param playerId id of the player to rank
+     * @return the player's position in the ranking, from 1, or 0 if there is no such player
+     */
+    public synchronized int getRank(Ranking ranking, int playerId) {
+        if (mDb == null) return 0;
+        SQLiteStatement selectRank = mSelectRank.get(ranking);
+        try {
+            selectRank.bindLong(1, playerId);
+            return (int) selectRank.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return 0; // no row for the player
+        } finally {
+            selectRank.clearBindings();
+        }
+    }
 
-            db.setTransactionSuccessful();
+    /**
+     * @param playerId id of the player
+     * @param limit most games to return
+     * @return the player's most recent games, latest first
+     */
+    public synchronized List<GameRecord> queryGames(int playerId, int limit) {
+        return queryGames(PLAYER_GAMES_SQL, new String[]{String.valueOf(playerId), String.valueOf(limit)});
+    }
+
+    /**
+     * @param player1Id id of one player
+     * @param player2Id id of the other
+     * @return every game between the two players, whichever moved first, in the order they were played
+     */
+    public synchronized List<GameRecord> queryHeadToHead(int player1Id, int player2Id) {
+        return queryGames(HEAD_TO_HEAD_SQL, new String[]{String.valueOf(player1Id), String.valueOf(player2Id)});
+    }
+
+    private List<GameRecord> queryGames(String sql, String[] args) {
+        List<GameRecord> games = new ArrayList<GameRecord>();
+        if (mDb == null) return games;
+        Cursor cursor = mDb.rawQuery(sql, args);
+        if (cursor == null) return games;
+
+        try {
+            while (cursor.moveToNext()) games.add(readGame(cursor));
+            return games;
         } finally {
-            db.endTransaction();
-            db.close();
+            cursor.close();
         }
+    }
+
+    // the player at the cursor's row of the player table
+    private static Player readPlayer(Cursor cursor) {
+        Player player = new Player(cursor.getInt(cursor.getColumnIndex(Player.DB_FIELDS.id)),
+                cursor.getString(cursor.getColumnIndex(Player.DB_FIELDS.name)));
+        player.wins = cursor.getInt(cursor.getColumnIndex(Player.DB_FIELDS.wins));
+        player.losses = cursor.getInt(cursor.getColumnIndex(Player.DB_FIELDS.losses));
+        player.draws = cursor.getInt(cursor.getColumnIndex(Player.DB_FIELDS.draws));
+        player.rating = cursor.getDouble(cursor.getColumnIndex(Player.DB_FIELDS.rating));
         return player;
     }
 
+    // the game at the cursor's row of the game table. Its rating change isn't stored, as it can be recomputed.
+    private static GameRecord readGame(Cursor cursor) {
+        GameConfig config = GameConfig.valueOf(cursor.getInt(cursor.getColumnIndex(GameRecord.DB_FIELDS.config)));
+        int movesColumn = cursor.getColumnIndex(GameRecord.DB_FIELDS.moves);
+        int[] moves = new int[config.getSize()];
+        int count = MoveCodec.canPack(config) ? MoveCodec.unpack(cursor.getLong(movesColumn), moves) :
+                MoveCodec.decode(cursor.getBlob(movesColumn), moves);
+        return new GameRecord(cursor.getInt(cursor.getColumnIndex(GameRecord.DB_FIELDS.player1)),
+                cursor.getInt(cursor.getColumnIndex(GameRecord.DB_FIELDS.player2)),
+                cursor.getInt(cursor.getColumnIndex(GameRecord.DB_FIELDS.winner)), config,
+                cursor.getLong(cursor.getColumnIndex(GameRecord.DB_FIELDS.startedAt)),
+                cursor.getLong(cursor.getColumnIndex(GameRecord.DB_FIELDS.finishedAt)), Arrays.copyOf(moves, count), 0);
+    }
+
+    /**
+     * @return the players and outcome of every recorded game rerating starts from, in the order they were played
+     */
+    public synchronized GameHistory loadGameHistory() {
+        if (mDb == null) return new GameHistory(1);
+        long historyStart = 0;
+        Cursor start = mDb.rawQuery(String.format("SELECT history_start FROM %s WHERE id = 0", RATING_PARAMETERS_TABLE), null);
+        if (start != null) {
+            try {
+                if (start.moveToFirst()) historyStart = start.getLong(0);
+            } finally {
+                start.close();
+            }
+        }
+
+        Cursor cursor = mDb.rawQuery(GAME_HISTORY_SQL, new String[]{String.valueOf(historyStart)});
+        GameHistory history = new GameHistory(cursor != null ? Math.max(cursor.getCount(), 1) : 1);
+        if (cursor == null) return history;
+
+        try {
+            while (cursor.moveToNext()) history.add(cursor.getInt(0), cursor.getInt(1), cursor.getInt(2));
+            return history;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return every player's rating before the games of loadGameHistory, indexed by player id
+     */
+    public synchronized double[] loadBaseRatings() {
+        if (mDb == null) return new double[0];
+        // highest id first, to size the array by
+        Cursor cursor = mDb.rawQuery(String.format("SELECT %s, %s FROM %s ORDER BY %s DESC", Player.DB_FIELDS.id,
+                Player.DB_FIELDS.baseRating, Player.DB_FIELDS.tableName, Player.DB_FIELDS.id), null);
+        if (cursor == null) return new double[0];
+
+        try {
+            if (!cursor.moveToFirst()) return new double[0];
+            double[] ratings = new double[cursor.getInt(0) + 1];
+            Arrays.fill(ratings, EloRating.INITIAL_RATING);
+            do {
+                ratings[cursor.getInt(0)] = cursor.getDouble(1);
+            } while (cursor.moveToNext());
+            return ratings;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return the k factor the stored ratings were computed with
+     */
+    public synchronized double getRatingKFactor() {
+        if (mDb == null) return EloRating.DEFAULT_K_FACTOR;
+        Cursor cursor = mDb.rawQuery(String.format("SELECT k_factor FROM %s WHERE id = 0", RATING_PARAMETERS_TABLE), null);
+        if (cursor == null) return EloRating.DEFAULT_K_FACTOR;
+
+        try {
+            return cursor.moveToFirst() ? cursor.getDouble(0) : EloRating.DEFAULT_K_FACTOR;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Replaces every player's rating in one transaction, as recomputed from the game history
+     * @param ratings ratings indexed by player id. Players beyond the end have no games in the history, and are
+     *                reset to their base rating.
+     * @param kFactor k factor the ratings were computed with
+     */
+    public synchronized void replaceRatings(double[] ratings, double kFactor) {
+        if (mDb == null) return;
+        SQLiteStatement updateRating = mDb.compileStatement(String.format("UPDATE %s SET %s = ? WHERE %s = ?",
+                Player.DB_FIELDS.tableName, Player.DB_FIELDS.rating, Player.DB_FIELDS.id));
+        try {
+            mDb.beginTransactionNonExclusive();
+
+            mDb.execSQL(String.format("UPDATE %s SET %s = %s", Player.DB_FIELDS.tableName, Player.DB_FIELDS.rating,
+                    Player.DB_FIELDS.baseRating));
+            for (int id = 0; id < ratings.length; ++id) {
+                updateRating.bindDouble(1, ratings[id]);
+                updateRating.bindLong(2, id);
+                updateRating.executeUpdateDelete();
+            }
+            mDb.execSQL(String.format("UPDATE %s SET k_factor = ? WHERE id = 0", RATING_PARAMETERS_TABLE),
+                    new Object[]{kFactor});
+
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+            updateRating.close();
+        }
+    }
+
+    /**
+     * @param name name of the player to create (record will be empty)
+     * @return A new, db backed up, Player object representing the new player requested, or null if it exists
+     * already or the database has been destroyed
+     */
+    public synchronized Player createPlayer(String name) {
+        if (mDb == null) return null;
+        try {
+            mInsertPlayer.bindString(1, name);
+            int id = (int) mInsertPlayer.executeInsert();
+            return id >= 0 ? new Player(id, name) : null;
+        } catch (SQLiteConstraintException e) {
+            Log.w(LOG_TAG, "player already exists: " + name);
+            return null;
+        } finally {
+            mInsertPlayer.clearBindings();
+        }
+    }
+
     /**
      * Serialize the game result (ie, update player table) based on details of the Game provided
      * @param game Game containing results to serialize
@@ -206,33 +565,82 @@ public class DatabaseManager {
     public void serializeGameResult(Game game) {
         if (game == null) return; // bad state
 
-        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        // rated from the players' ratings as the game has them
+        double ratingChange = ELO.ratingChange(game.player1.rating, game.player2.rating, game.getWinnerMark());
+        GameRecord record = game.createRecord(ratingChange);
+        applyResults(Collections.singletonList(record), record.getDeltas(), 0);
+    }
 
-        try {
-            db.beginTransaction();
+    /**
+     * Records any number of games, and adds their changes to the players' records, in a single transaction, so a
+     * batch costs one disk sync. Records are incremented rather than overwritten, so concurrent results are
+     * never lost.
+     * @param games games to add to the game table
+     * @param deltas changes to apply, from the games
+     * @param sequence sequence number of the last journaled result included, recorded in the same transaction,
+     *                 or 0 if the results weren't journaled
+     * @return true if the results were written, false if the database has been destroyed, in which case journaled
+     *         results must be kept in the journal to be replayed when it is next opened
+     */
+    public synchronized boolean applyResults(Collection<GameRecord> games, Collection<ResultDelta> deltas, long sequence) {
+        if (games.isEmpty() && deltas.isEmpty() && sequence == 0) return true;
+        if (mDb == null) {
+            Log.w(LOG_TAG, String.format("database destroyed, not writing %d games", games.size()));
+            return false;
+        }
 
-            Player player1 = game.player1;
-            int p1row = db.update(Player.DB_FIELDS.tableName, player1.getSerializedValues(),
-                    String.format("id = %s", player1.id), null);
+        try {
+            mDb.beginTransactionNonExclusive();
+
+            for (GameRecord game : games) {
+                mInsertGame.bindLong(1, game.player1Id);
+                mInsertGame.bindLong(2, game.player2Id);
+                mInsertGame.bindLong(3, game.winner);
+                mInsertGame.bindLong(4, game.config.getPackedValue());
+                mInsertGame.bindLong(5, game.startedAt);
+                mInsertGame.bindLong(6, game.finishedAt);
+                if (game.isPacked()) {
+                    mInsertGame.bindLong(7, game.getPackedMoves());
+                } else {
+                    mInsertGame.bindBlob(7, game.getEncodedMoves());
+                }
+                mInsertGame.executeInsert();
+                mInsertGame.clearBindings();
+            }
 
-            Player player2 = game.player2;
-            int p2row = db.update(Player.DB_FIELDS.tableName, player2.getSerializedValues(),
-                    String.format("id = %s", player2.id), null);
+            for (ResultDelta delta : deltas) {
+                mUpdatePlayerStats.bindLong(1, delta.wins);
+                mUpdatePlayerStats.bindLong(2, delta.losses);
+                mUpdatePlayerStats.bindLong(3, delta.draws);
+                mUpdatePlayerStats.bindLong(4, delta.playerId);
+                mUpdatePlayerStats.bindDouble(5, delta.rating);
+                mUpdatePlayerStats.executeUpdateDelete();
+                mUpdatePlayerStats.clearBindings();
+            }
+            if (sequence > 0) {
+                mUpdateResultSequence.bindLong(1, sequence);
+                mUpdateResultSequence.executeUpdateDelete();
+                mUpdateResultSequence.clearBindings();
+            }
 
-            db.setTransactionSuccessful();
+            mDb.setTransactionSuccessful();
         } finally {
-            db.endTransaction();
-            db.close();
+            mDb.endTransaction();
         }
+        return true;
     }
 
-    // db helper methods
+    /**
+     * @return sequence number of the last journaled result applied by applyResults, or 0 once destroyed
+     */
+    public synchronized long getAppliedResultSequence() {
+        if (mDb == null) return 0;
+        return mSelectResultSequence.simpleQueryForLong();
+    }
+
+    // db helper methods, for schema changes only: statements run during play are compiled once and not logged
     private void execute(SQLiteDatabase db, String sql) {
         Log.d(LOG_TAG, "executing sql statement: " + sql);
         db.execSQL(sql);
     }
-    private Cursor execute(SQLiteDatabase db, String sql, String[] selectionArgs) {
-        Log.d(LOG_TAG, "executing raw sql statement: " + sql);
-        return db.rawQuery(sql, selectionArgs);
-    }
 }
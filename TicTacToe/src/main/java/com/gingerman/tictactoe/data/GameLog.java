@@ -0,0 +1,464 @@
+package com.gingerman.tictactoe.data;
+
+import android.util.Log;
+
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.Player;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Alternative to the database for high volume play: every player created and game completed is appended to a
+ * log as a fixed size binary record, and players' records are derived by replaying it.
+ *
+ * The log is split into segment files of SEGMENT_RECORDS records, each mapped into memory as a whole, so an
+ * append is a few stores into the mapping rather than a write call, and like the result journal survives the
+ * process dying without a disk sync. Every SNAPSHOT_INTERVAL records, every player is written to a snapshot
+ * file in the background, and the segments it covers are deleted, so opening the log reads the latest snapshot
+ * and replays only the records after it.
+ *
+ * Records are sequence number, type, then type specific fields, with a checksum, and the log ends at the first
+ * record that doesn't follow on from the one before or doesn't match its checksum. Player names are limited to
+ * MAX_NAME_BYTES of UTF-8. Moves are kept for boards MoveCodec can pack into a long, and dropped for larger ones.
+ */
+public class GameLog implements PlayerStore {
+    private static final String LOG_TAG = "GameLog";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int SNAPSHOT_MAGIC = 0x54544c53;
+
+    public static final int RECORD_SIZE = 64;
+    public static final int SEGMENT_RECORDS = 1 << 16; // 4MB a segment
+    public static final int SNAPSHOT_INTERVAL = 1 << 15;
+    public static final int MAX_NAME_BYTES = RECORD_SIZE - 20;
+
+    private static final byte TYPE_PLAYER = 1;
+    private static final byte TYPE_GAME = 2;
+
+    // record layout, by offset
+    private static final int SEQUENCE = 0; // long, from 1
+    private static final int TYPE = 8; // byte
+    private static final int SMALL = 9; // byte: winner of a game, or length of a player's name
+    private static final int MOVE_COUNT = 10; // short, -1 if the moves weren't kept
+    private static final int CHECKSUM = 12; // int, over the rest of the record
+    private static final int PLAYER_ID = 16; // int
+    private static final int PLAYER_NAME = 20; // MAX_NAME_BYTES bytes of UTF-8
+    private static final int GAME_PLAYER_1 = 16; // int
+    private static final int GAME_PLAYER_2 = 20; // int
+    private static final int GAME_CONFIG = 24; // int, GameConfig.getPackedValue
+    private static final int GAME_STARTED_AT = 28; // long
+    private static final int GAME_FINISHED_AT = 36; // long
+    private static final int GAME_RATING_CHANGE = 44; // double
+    private static final int GAME_MOVES = 52; // long, MoveCodec.pack
+
+    private final File mDirectory;
+    private final ExecutorService mSnapshotExecutor = Executors.newSingleThreadExecutor();
+
+    // guarded by this
+    private final Map<Integer, Player> mPlayers = new LinkedHashMap<Integer, Player>(); // in order of creation
+    private final Map<String, Integer> mIds = new HashMap<String, Integer>();
+    private int mNextPlayerId = 1;
+    private long mLastSequence = 0;
+    private long mLastSnapshotSequence = 0;
+    private MappedByteBuffer mSegment = null;
+    private long mSegmentFirstSequence = 0;
+    private int mSegmentPosition = 0; // offset of the next record in the segment
+
+    /**
+     * @param directory directory to keep the log and its snapshots in, created if need be
+     */
+    public GameLog(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Loads the latest snapshot and replays the log after it. Must be called before any other method, on a
+     * background thread.
+     */
+    @Override
+    public synchronized void open() throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) throw new IOException("Failed to create " + mDirectory);
+
+        long[] snapshots = listSequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.length - 1; i >= 0 && mLastSequence == 0; --i) {
+            try {
+                readSnapshot(snapshotFile(snapshots[i]));
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Skipping unreadable snapshot " + snapshots[i], e);
+                mPlayers.clear();
+                mIds.clear();
+                mNextPlayerId = 1;
+                mLastSequence = 0;
+            }
+        }
+        mLastSnapshotSequence = mLastSequence;
+
+        long[] segments = listSequences(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        int replayed = 0;
+        for (int i = 0; i < segments.length; ++i) {
+            boolean last = i == segments.length - 1;
+            if (!last && segments[i + 1] <= mLastSequence + 1) continue; // covered by the snapshot
+
+            MappedByteBuffer segment = mapSegment(segments[i]);
+            int position = 0;
+            while (position < segment.capacity() && readRecord(segment, position)) {
+                position += RECORD_SIZE;
+                replayed++;
+            }
+            if (last || position < segment.capacity()) {
+                // the end of the log: later segments can only hold records that never followed on
+                mSegment = segment;
+                mSegmentFirstSequence = segments[i];
+                mSegmentPosition = position;
+                for (int j = i + 1; j < segments.length; ++j) deleteFile(segmentFile(segments[j]));
+                break;
+            }
+        }
+        Log.d(LOG_TAG, String.format("Opened with %d players from snapshot %d and %d records after it",
+                mPlayers.size(), mLastSnapshotSequence, replayed));
+    }
+
+    /**
+     * Flushes the mapped log to disk and stops the background snapshot thread
+     */
+    @Override
+    public synchronized void close() {
+        mSnapshotExecutor.shutdown();
+        if (mSegment != null) mSegment.force();
+        mSegment = null;
+    }
+
+    /**
+     * @return a copy of every player and their record, in the order they were created
+     */
+    @Override
+    public synchronized List<Player> fetchAllPlayers() {
+        List<Player> players = new ArrayList<Player>(mPlayers.size());
+        for (Player player : mPlayers.values()) players.add(new Player(player));
+        return players;
+    }
+
+    @Override
+    public List<Player> fetchLeaderboard(Ranking ranking, int offset, int count) {
+        return ranking.page(fetchAllPlayers(), offset, count); // ranked outside the lock
+    }
+
+    @Override
+    public synchronized Player findPlayer(String name) {
+        Integer id = mIds.get(name);
+        return id != null ? new Player(mPlayers.get(id)) : null;
+    }
+
+    /**
+     * @param name name of the player to create (record will be empty)
+     * @return the new player, or null if the name is taken or too long to log
+     */
+    @Override
+    public synchronized Player createPlayer(String name) {
+        if (mIds.containsKey(name)) {
+            Log.w(LOG_TAG, "player already exists: " + name);
+            return null;
+        }
+        byte[] nameBytes = encodeName(name);
+        if (nameBytes.length > MAX_NAME_BYTES) {
+            Log.w(LOG_TAG, "player name too long to log: " + name);
+            return null;
+        }
+
+        try {
+            int id = mNextPlayerId;
+            int offset = startRecord(TYPE_PLAYER);
+            mSegment.put(offset + SMALL, (byte) nameBytes.length);
+            mSegment.putInt(offset + PLAYER_ID, id);
+            for (int i = 0; i < nameBytes.length; ++i) mSegment.put(offset + PLAYER_NAME + i, nameBytes[i]);
+            finishRecord(offset);
+
+            addPlayer(id, name);
+            snapshotIfDue();
+            return new Player(id, name);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to log new player " + name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Appends a completed game to the log, and adds it to its players' records
+     * @param game record of the game, including the change to its players' ratings
+     */
+    @Override
+    public synchronized void recordGame(GameRecord game) {
+        try {
+            int offset = startRecord(TYPE_GAME);
+            mSegment.put(offset + SMALL, (byte) game.winner);
+            mSegment.putInt(offset + GAME_PLAYER_1, game.player1Id);
+            mSegment.putInt(offset + GAME_PLAYER_2, game.player2Id);
+            mSegment.putInt(offset + GAME_CONFIG, game.config.getPackedValue());
+            mSegment.putLong(offset + GAME_STARTED_AT, game.startedAt);
+            mSegment.putLong(offset + GAME_FINISHED_AT, game.finishedAt);
+            mSegment.putDouble(offset + GAME_RATING_CHANGE, game.ratingChange);
+            if (game.isPacked()) {
+                mSegment.putShort(offset + MOVE_COUNT, (short) game.moves.length);
+                mSegment.putLong(offset + GAME_MOVES, game.getPackedMoves());
+            } else {
+                mSegment.putShort(offset + MOVE_COUNT, (short) -1);
+            }
+            finishRecord(offset);
+
+            applyGame(game.player1Id, game.player2Id, game.winner, game.ratingChange);
+            snapshotIfDue();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, String.format("Failed to log game between players %d and %d", game.player1Id, game.player2Id), e);
+        }
+    }
+
+    /**
+     * Nothing to do, as games are in the mapped log, and applied to the players, as they are recorded
+     */
+    @Override
+    public void flush() {
+    }
+
+    // claims space for the next record, moving on to a new segment if this one is full, and returns its offset
+    private int startRecord(byte type) throws IOException {
+        if (mSegment == null || mSegmentPosition + RECORD_SIZE > mSegment.capacity()) {
+            mSegmentFirstSequence = mLastSequence + 1;
+            mSegment = mapSegment(mSegmentFirstSequence);
+            mSegmentPosition = 0;
+        }
+        int offset = mSegmentPosition;
+        for (int i = 0; i < RECORD_SIZE; i += 8) mSegment.putLong(offset + i, 0); // in case of a replayed tail
+        mSegment.putLong(offset + SEQUENCE, mLastSequence + 1);
+        mSegment.put(offset + TYPE, type);
+        return offset;
+    }
+
+    // completes the record with its checksum, which marks it as written
+    private void finishRecord(int offset) {
+        mSegment.putInt(offset + CHECKSUM, checksum(mSegment, offset));
+        mSegmentPosition += RECORD_SIZE;
+        mLastSequence++;
+    }
+
+    // applies the record at position to the players if it follows on from the last, returning false if it doesn't
+    private boolean readRecord(MappedByteBuffer segment, int offset) {
+        long sequence = segment.getLong(offset + SEQUENCE);
+        if (sequence == 0 || segment.getInt(offset + CHECKSUM) != checksum(segment, offset)) return false;
+        if (sequence <= mLastSequence) return true; // covered by the snapshot
+        if (sequence != mLastSequence + 1) return false;
+
+        byte type = segment.get(offset + TYPE);
+        if (type == TYPE_PLAYER) {
+            byte[] nameBytes = new byte[segment.get(offset + SMALL)];
+            for (int i = 0; i < nameBytes.length; ++i) nameBytes[i] = segment.get(offset + PLAYER_NAME + i);
+            addPlayer(segment.getInt(offset + PLAYER_ID), decodeName(nameBytes));
+        } else if (type == TYPE_GAME) {
+            applyGame(segment.getInt(offset + GAME_PLAYER_1), segment.getInt(offset + GAME_PLAYER_2),
+                    segment.get(offset + SMALL), segment.getDouble(offset + GAME_RATING_CHANGE));
+        } else {
+            return false;
+        }
+        mLastSequence = sequence;
+        return true;
+    }
+
+    private void addPlayer(int id, String name) {
+        mPlayers.put(id, new Player(id, name));
+        mIds.put(name, id);
+        mNextPlayerId = Math.max(mNextPlayerId, id + 1);
+    }
+
+    private void applyGame(int player1Id, int player2Id, int winner, double ratingChange) {
+        Player player1 = mPlayers.get(player1Id);
+        Player player2 = mPlayers.get(player2Id);
+        if (player1 == null || player2 == null) return; // players are always logged before their games
+
+        if (winner == Board.PLAYER_1) {
+            player1.wins++;
+            player2.losses++;
+        } else if (winner == Board.PLAYER_2) {
+            player1.losses++;
+            player2.wins++;
+        } else {
+            player1.draws++;
+            player2.draws++;
+        }
+        player1.rating += ratingChange;
+        player2.rating -= ratingChange;
+    }
+
+    // once the last record has been applied to the players
+    private void snapshotIfDue() {
+        if (mLastSequence - mLastSnapshotSequence >= SNAPSHOT_INTERVAL) snapshot();
+    }
+
+    // writes a copy of every player in the background, then deletes the segments and snapshots it replaces
+    private void snapshot() {
+        final long sequence = mLastSequence;
+        final long segmentFirstSequence = mSegmentFirstSequence;
+        final List<Player> players = fetchAllPlayers();
+        final int nextPlayerId = mNextPlayerId;
+        mLastSnapshotSequence = sequence;
+
+        mSnapshotExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeSnapshot(sequence, nextPlayerId, players);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Failed to write snapshot " + sequence, e);
+                    return;
+                }
+                // segments before the current one, and the snapshots before this one, are no longer needed
+                for (long first : listSequences(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                    if (first < segmentFirstSequence) deleteFile(segmentFile(first));
+                }
+                for (long earlier : listSequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                    if (earlier < sequence) deleteFile(snapshotFile(earlier));
+                }
+            }
+        });
+    }
+
+    private void writeSnapshot(long sequence, int nextPlayerId, List<Player> players) throws IOException {
+        File temp = new File(mDirectory, SNAPSHOT_PREFIX + sequence + ".tmp");
+        FileOutputStream file = new FileOutputStream(temp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(nextPlayerId);
+            out.writeInt(players.size());
+            for (Player player : players) {
+                out.writeInt(player.id);
+                out.writeUTF(player.name);
+                out.writeInt(player.wins);
+                out.writeInt(player.losses);
+                out.writeInt(player.draws);
+                out.writeDouble(player.rating);
+            }
+            out.writeInt(SNAPSHOT_MAGIC); // a snapshot cut short is never mistaken for a complete one
+            out.flush();
+            file.getFD().sync(); // before the segments it replaces are deleted
+        } finally {
+            file.close();
+        }
+        if (!temp.renameTo(snapshotFile(sequence))) throw new IOException("Failed to rename " + temp);
+    }
+
+    private void readSnapshot(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not a snapshot");
+            long sequence = in.readLong();
+            int nextPlayerId = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                int id = in.readInt();
+                String name = in.readUTF();
+                addPlayer(id, name);
+                Player player = mPlayers.get(id);
+                player.wins = in.readInt();
+                player.losses = in.readInt();
+                player.draws = in.readInt();
+                player.rating = in.readDouble();
+            }
+            if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Snapshot is incomplete");
+            mLastSequence = sequence;
+            mNextPlayerId = Math.max(mNextPlayerId, nextPlayerId);
+        } finally {
+            in.close();
+        }
+    }
+
+    // maps a whole segment, creating it full of zeros if need be. The mapping outlives the file being closed.
+    private MappedByteBuffer mapSegment(long firstSequence) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segmentFile(firstSequence), "rw");
+        try {
+            long size = (long) SEGMENT_RECORDS * RECORD_SIZE;
+            if (file.length() != size) file.setLength(size);
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            file.close();
+        }
+    }
+
+    // sequence numbers in the names of files with the prefix and suffix, in order
+    private long[] listSequences(String prefix, String suffix) {
+        String[] names = mDirectory.list();
+        if (names == null) return new long[0];
+
+        long[] sequences = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (!name.startsWith(prefix) || !name.endsWith(suffix)) continue;
+            try {
+                sequences[count++] = Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        sequences = Arrays.copyOf(sequences, count);
+        Arrays.sort(sequences);
+        return sequences;
+    }
+
+    private File segmentFile(long firstSequence) {
+        return new File(mDirectory, SEGMENT_PREFIX + firstSequence + SEGMENT_SUFFIX);
+    }
+
+    private File snapshotFile(long sequence) {
+        return new File(mDirectory, SNAPSHOT_PREFIX + sequence + SNAPSHOT_SUFFIX);
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) Log.w(LOG_TAG, "Failed to delete " + file.getName());
+    }
+
+    // FNV-1a over the record, skipping the checksum itself
+    private static int checksum(MappedByteBuffer segment, int offset) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < RECORD_SIZE; ++i) {
+            if (i >= CHECKSUM && i < CHECKSUM + 4) continue;
+            hash = (hash ^ (segment.get(offset + i) & 0xFF)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private static byte[] encodeName(String name) {
+        try {
+            return name.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // every platform supports UTF-8
+        }
+    }
+
+    private static String decodeName(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.gingerman.tictactoe.data;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes game results to the database behind the game, batching many games into a single transaction.
+ *
+ * Completed games are queued both as a record for the game table and as changes to both players' records,
+ * summed per player. The queue is flushed in the background once FLUSH_GAME_COUNT games are waiting or
+ * FLUSH_DELAY_MS after the first one, and on demand by flush and destroy.
+ *
+ * Until they are flushed, games are also appended to a journal file, each under a sequence number. A write to
+ * the file survives the process dying without needing a disk sync. Every flush records the sequence number of
+ * its last game in the same transaction as the changes, so recover replays only the games that never made
+ * it to the database, and none twice.
+ */
+public class GameResultWriter {
+    private static final String LOG_TAG = "GameResultWriter";
+    private static final String JOURNAL_NAME = "results.v3.journal"; // sequence number then GameRecord, per game
+    // written before game history, as records of sequence number, player id, wins, losses, draws and, from the
+    // second, rating change. Only ever read on recovery.
+    private static final String[] LEGACY_JOURNAL_NAMES = {"results.journal", "results.v2.journal"};
+
+    public static final int FLUSH_GAME_COUNT = 32;
+    public static final long FLUSH_DELAY_MS = 5000;
+
+    private final File mDirectory;
+    private final File mJournalFile;
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Object mFlushLock = new Object(); // held while writing, so batches reach the database in order
+
+    // guarded by this
+    private List<GameRecord> mPendingGames = new ArrayList<GameRecord>();
+    private Map<Integer, ResultDelta> mPending = new LinkedHashMap<Integer, ResultDelta>();
+    private long mNextSequence = 1;
+    private ScheduledFuture<?> mScheduledFlush = null;
+    private FileOutputStream mJournal = null;
+    private long mJournalLength = 0;
+    private final ByteArrayOutputStream mRecordBytes = new ByteArrayOutputStream(128);
+    private final DataOutputStream mRecordOut = new DataOutputStream(mRecordBytes);
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param directory directory to keep the journal in
+     */
+    public GameResultWriter(File directory) {
+        mDirectory = directory;
+        mJournalFile = new File(directory, JOURNAL_NAME);
+    }
+
+    /**
+     * Applies any games journaled but not flushed before the process last died. Must be called once the
+     * database is ready, before players are loaded or results queued, on a background thread.
+     */
+    public synchronized void recover() {
+        long applied = DatabaseManager.getInstance().getAppliedResultSequence();
+        List<GameRecord> games = new ArrayList<GameRecord>();
+        Map<Integer, ResultDelta> unapplied = new LinkedHashMap<Integer, ResultDelta>();
+        long lastSequence = applied;
+        for (int i = 0; i < LEGACY_JOURNAL_NAMES.length; ++i) {
+            File legacy = new File(mDirectory, LEGACY_JOURNAL_NAMES[i]);
+            lastSequence = Math.max(lastSequence, readLegacyJournal(legacy, i > 0, applied, unapplied));
+        }
+        lastSequence = Math.max(lastSequence, readJournal(applied, games, unapplied));
+
+        if (lastSequence > applied) {
+            Log.d(LOG_TAG, String.format("Recovering results %d to %d from the result journal", applied + 1, lastSequence));
+            if (!DatabaseManager.getInstance().applyResults(games, unapplied.values(), lastSequence)) return; // kept for next time
+        }
+        mNextSequence = lastSequence + 1;
+        clearJournal();
+        for (String name : LEGACY_JOURNAL_NAMES) {
+            File legacy = new File(mDirectory, name);
+            if (legacy.exists() && !legacy.delete()) Log.w(LOG_TAG, "Failed to clear legacy result journal " + name);
+        }
+    }
+
+    // adds games after applied from the journal to games and unapplied, returning the last sequence number read,
+    // or applied
+    private long readJournal(long applied, List<GameRecord> games, Map<Integer, ResultDelta> unapplied) {
+        long lastSequence = applied;
+        if (!mJournalFile.exists()) return lastSequence;
+        try {
+            InputStream in = new FileInputStream(mJournalFile);
+            try {
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+                while (true) {
+                    long sequence = data.readInt() & 0xFFFFFFFFL;
+                    GameRecord game = GameRecord.readFrom(data);
+                    if (sequence <= applied) continue; // flushed before the process died
+                    games.add(game);
+                    for (ResultDelta delta : game.getDeltas()) addDelta(unapplied, delta);
+                    lastSequence = Math.max(lastSequence, sequence);
+                }
+            } catch (EOFException e) {
+                // end of the journal, or of a record cut short as the process died
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to read result journal", e);
+        } catch (IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Result journal is corrupt, recovering the games before the corruption", e);
+        }
+        return lastSequence;
+    }
+
+    // as readJournal, for a journal of player record changes
+    private long readLegacyJournal(File file, boolean hasRatings, long applied, Map<Integer, ResultDelta> unapplied) {
+        long lastSequence = applied;
+        if (!file.exists()) return lastSequence;
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+                while (true) {
+                    long sequence = data.readInt() & 0xFFFFFFFFL;
+                    ResultDelta delta = new ResultDelta(data.readInt());
+                    delta.wins = data.readInt();
+                    delta.losses = data.readInt();
+                    delta.draws = data.readInt();
+                    if (hasRatings) delta.rating = data.readDouble();
+                    if (sequence <= applied) continue; // flushed before the process died
+                    addDelta(unapplied, delta);
+                    lastSequence = Math.max(lastSequence, sequence);
+                }
+            } catch (EOFException e) {
+                // end of the journal, or of a record cut short as the process died
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to read result journal " + file.getName(), e);
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Queues a completed game. Returns as soon as it has been journaled, without waiting for the database.
+     * @param game record of the game, from Game.createRecord
+     */
+    public synchronized void enqueue(GameRecord game) {
+        journal(mNextSequence++, game);
+        mPendingGames.add(game);
+        for (ResultDelta delta : game.getDeltas()) addDelta(mPending, delta);
+
+        if (mPendingGames.size() >= FLUSH_GAME_COUNT) {
+            if (mScheduledFlush != null) mScheduledFlush.cancel(false);
+            mScheduledFlush = mExecutor.schedule(mFlushTask, 0, TimeUnit.MILLISECONDS);
+        } else if (mScheduledFlush == null) {
+            mScheduledFlush = mExecutor.schedule(mFlushTask, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes every queued game to the database in one transaction, returning once they are written.
+     * Should be called before reading players or games back from the database, on a background thread.
+     */
+    public void flush() {
+        synchronized (mFlushLock) {
+            List<GameRecord> games;
+            List<ResultDelta> batch;
+            long lastSequence;
+            long journaled;
+            synchronized (this) {
+                if (mScheduledFlush != null) mScheduledFlush.cancel(false);
+                mScheduledFlush = null;
+                if (mPendingGames.isEmpty()) return;
+                games = mPendingGames;
+                batch = new ArrayList<ResultDelta>(mPending.values());
+                mPendingGames = new ArrayList<GameRecord>();
+                mPending = new LinkedHashMap<Integer, ResultDelta>();
+                lastSequence = mNextSequence - 1;
+                journaled = mJournalLength;
+            }
+
+            // a database already destroyed leaves the games in the journal, to be recovered when it is next opened
+            if (!DatabaseManager.getInstance().applyResults(games, batch, lastSequence)) return;
+
+            synchronized (this) {
+                // games queued during the write are still needed in the journal, so leave it for the next flush
+                if (mJournalLength == journaled) clearJournal();
+            }
+        }
+    }
+
+    /**
+     * Flushes any queued games and stops the background thread. Must be called before the database is closed.
+     */
+    public void destroy() {
+        flush();
+        mExecutor.shutdown();
+        synchronized (this) {
+            closeJournal();
+        }
+    }
+
+    // sums into a total of our own, leaving the caller's delta untouched
+    private static void addDelta(Map<Integer, ResultDelta> deltas, ResultDelta delta) {
+        ResultDelta total = deltas.get(delta.playerId);
+        if (total == null) {
+            total = new ResultDelta(delta.playerId);
+            deltas.put(delta.playerId, total);
+        }
+        total.add(delta);
+    }
+
+    // appends a game to the journal, opening it if need be. Failures only cost the crash fallback.
+    private void journal(long sequence, GameRecord game) {
+        try {
+            if (mJournal == null) {
+                mJournal = new FileOutputStream(mJournalFile, true);
+                mJournalLength = mJournalFile.length();
+            }
+            // written as one buffer, so a record is either all there or cut short at the end of the file
+            mRecordBytes.reset();
+            mRecordOut.writeInt((int) sequence);
+            game.writeTo(mRecordOut);
+            mRecordBytes.writeTo(mJournal);
+            mJournalLength += mRecordBytes.size();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, String.format("Failed to journal game between players %d and %d", game.player1Id, game.player2Id), e);
+        }
+    }
+
+    private void clearJournal() {
+        closeJournal();
+        if (mJournalFile.exists() && !mJournalFile.delete()) Log.w(LOG_TAG, "Failed to clear result journal");
+        mJournalLength = 0;
+    }
+
+    private void closeJournal() {
+        if (mJournal == null) return;
+        try {
+            mJournal.close();
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to close result journal", e);
+        }
+        mJournal = null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.gingerman.tictactoe.data;
+
+import android.database.AbstractCursor;
+
+import com.gingerman.tictactoe.model.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The leaderboard as far as it has been read, one row per player in rank order, with their id as _id for a
+ * CursorAdapter. Pages are written into the one cursor as they are read, appended at the end or overwriting the
+ * rows they were read again for, so the list showing it keeps its position, and moving to a row is a single
+ * list lookup however many pages there are.
+ *
+ * Rows are written and read on the UI thread only. Adapters must be told of writes with notifyDataSetChanged.
+ */
+public class LeaderboardCursor extends AbstractCursor {
+    private static final String[] COLUMNS = {"_id", Player.DB_FIELDS.name, Player.DB_FIELDS.wins,
+            Player.DB_FIELDS.losses, Player.DB_FIELDS.draws, Player.DB_FIELDS.rating};
+    private static final int ID_COLUMN = 0;
+    private static final int NAME_COLUMN = 1;
+    private static final int WINS_COLUMN = 2;
+    private static final int LOSSES_COLUMN = 3;
+    private static final int DRAWS_COLUMN = 4;
+    private static final int RATING_COLUMN = 5;
+
+    private final List<Player> mPlayers = new ArrayList<Player>(); // by rank, from 0
+
+    /**
+     * Writes a page of players, read from the store, over the rows from offset, adding any past the last row
+     * @param offset rank of the first player, from 0, at most the number of rows
+     * @param players the page's players, best first, which the cursor takes ownership of
+     */
+    public void setRows(int offset, List<Player> players) {
+        if (offset < 0 || offset > mPlayers.size())
+            throw new IndexOutOfBoundsException(String.format("page at %d of %d rows", offset, mPlayers.size()));
+        for (int i = 0; i < players.size(); ++i) {
+            if (offset + i < mPlayers.size()) {
+                mPlayers.set(offset + i, players.get(i));
+            } else {
+                mPlayers.add(players.get(i));
+            }
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mPlayers.size();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return COLUMNS;
+    }
+
+    @Override
+    public String getString(int column) {
+        return column == NAME_COLUMN ? current().name : String.valueOf(column == RATING_COLUMN ? getDouble(column) : getLong(column));
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        Player player = current();
+        switch (column) {
+            case ID_COLUMN: return player.id;
+            case WINS_COLUMN: return player.wins;
+            case LOSSES_COLUMN: return player.losses;
+            case DRAWS_COLUMN: return player.draws;
+            case RATING_COLUMN: return Math.round(player.rating);
+            default: throw new IllegalArgumentException("not a numeric column: " + column);
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return column == RATING_COLUMN ? current().rating : getLong(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return column == NAME_COLUMN && current().name == null;
+    }
+
+    private Player current() {
+        return mPlayers.get(getPosition());
+    }
+}
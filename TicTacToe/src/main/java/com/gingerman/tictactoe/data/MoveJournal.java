@@ -0,0 +1,209 @@
+package com.gingerman.tictactoe.data;
+
+import android.util.Log;
+
+import com.gingerman.tictactoe.model.Game;
+import com.gingerman.tictactoe.model.GameConfig;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Checkpoints the game in progress, so it can be resumed if the process dies before it is completed.
+ *
+ * A header describing the game is written as it starts, then each move is appended as two bytes, so a move costs
+ * one tiny sequential write and the game is never rewritten. Writes happen in order on a background thread,
+ * so the caller never waits on the disk, and like the result journal survive the process dying without a sync.
+ * The journal is deleted once the game is completed or quit.
+ */
+public class MoveJournal {
+    private static final String LOG_TAG = "MoveJournal";
+    private static final String JOURNAL_NAME = "game.journal";
+    private static final int MAGIC = 0x5454474a;
+    private static final int COMPUTER_OPPONENT = 1;
+
+    private final File mJournalFile;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    // only used on the executor's thread
+    private FileOutputStream mJournal = null;
+
+    /**
+     * A game read back from the journal, to rebuild
+     */
+    public static class Checkpoint {
+        public final GameConfig config;
+        public final boolean computerOpponent;
+        public final int player1Id;
+        public final String player1Name;
+        public final int player2Id;
+        public final String player2Name;
+        public final long startedAt;
+        public final int[] moves;
+
+        private Checkpoint(GameConfig gameConfig, boolean computer, int player1, String name1, int player2,
+                           String name2, long started, int[] gameMoves) {
+            config = gameConfig;
+            computerOpponent = computer;
+            player1Id = player1;
+            player1Name = name1;
+            player2Id = player2;
+            player2Name = name2;
+            startedAt = started;
+            moves = gameMoves;
+        }
+    }
+
+    /**
+     * @param directory directory to keep the journal in
+     */
+    public MoveJournal(File directory) {
+        mJournalFile = new File(directory, JOURNAL_NAME);
+    }
+
+    /**
+     * Starts journaling a game, replacing any game journaled before. Moves it has already played, as when it is
+     * resumed, are written along with the header.
+     * @param game game to journal
+     */
+    public void start(Game game) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(game.getConfig().getPackedValue());
+            out.writeInt(game.isComputerOpponent() ? COMPUTER_OPPONENT : 0);
+            out.writeInt(game.player1.id);
+            out.writeUTF(game.player1.name);
+            out.writeInt(game.player2.id);
+            out.writeUTF(game.player2.name);
+            out.writeLong(game.startedAt);
+            for (int i = 0; i < game.getMoveCount(); ++i) out.writeShort(game.getMove(i));
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // can't happen writing to memory
+        }
+
+        // a game is only worth resuming in full, so its header goes in a single write
+        final byte[] header = bytes.toByteArray();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeJournal();
+                try {
+                    mJournal = new FileOutputStream(mJournalFile, false);
+                    mJournal.write(header);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Failed to start move journal", e);
+                    closeJournal();
+                }
+            }
+        });
+    }
+
+    /**
+     * Appends a move to the journaled game. Returns straight away, writing in the background.
+     * @param position position claimed
+     */
+    public void append(int position) {
+        final byte[] move = new byte[]{(byte) (position >>> 8), (byte) position};
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mJournal == null) return; // not journaling a game
+                try {
+                    mJournal.write(move);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Failed to journal move", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops journaling the game and deletes its journal, as it is completed or quit and won't be resumed
+     */
+    public void finish() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeJournal();
+                if (mJournalFile.exists() && !mJournalFile.delete()) Log.w(LOG_TAG, "Failed to delete move journal");
+            }
+        });
+    }
+
+    /**
+     * Finishes writing and stops the background thread, keeping the journal so its game can be resumed
+     */
+    public void close() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeJournal();
+            }
+        });
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Reads the game left in the journal when the process last ended. Must be called before start, on a
+     * background thread.
+     * @return the game as of its last journaled move, or null if there is none or it can't be read
+     */
+    public Checkpoint read() {
+        if (!mJournalFile.exists()) return null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mJournalFile)));
+            try {
+                if (in.readInt() != MAGIC) return null;
+                GameConfig config = GameConfig.valueOf(in.readInt());
+                int flags = in.readInt();
+                int player1Id = in.readInt();
+                String player1Name = in.readUTF();
+                int player2Id = in.readInt();
+                String player2Name = in.readUTF();
+                long startedAt = in.readLong();
+
+                int[] moves = new int[config.getSize()];
+                int count = 0;
+                try {
+                    while (count < moves.length) moves[count++] = in.readUnsignedShort();
+                } catch (EOFException e) {
+                    count--; // end of the journal, or of a move cut short as the process died
+                }
+                return new Checkpoint(config, (flags & COMPUTER_OPPONENT) != 0, player1Id, player1Name, player2Id,
+                        player2Name, startedAt, Arrays.copyOf(moves, count));
+            } finally {
+                in.close();
+            }
+        } catch (EOFException e) {
+            return null; // header cut short, so no moves were made
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to read move journal", e);
+            return null;
+        } catch (IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Corrupt move journal", e);
+            return null;
+        }
+    }
+
+    private void closeJournal() {
+        if (mJournal == null) return;
+        try {
+            mJournal.close();
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to close move journal", e);
+        }
+        mJournal = null;
+    }
+}
@@ -0,0 +1,106 @@
+package com.gingerman.tictactoe.data;
+
+import com.gingerman.tictactoe.model.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Authoritative in memory copy of every player and their record, loaded from the database once and then kept
+ * up to date with the same changes written to it, rather than reloaded.
+ *
+ * Readers get an immutable Snapshot through a volatile reference, so they never lock or see a half made change.
+ * Every change publishes a new snapshot with the next version, so holders of an old one can tell it's stale.
+ * Players in a snapshot are shared by every reader and must not be modified: take a copy to play with.
+ */
+public class PlayerCache {
+    private volatile Snapshot mSnapshot = new Snapshot(Collections.<Player>emptyList(), PlayerIndex.EMPTY, 0);
+
+    // guarded by this. Positions of players in the snapshot's list, as it is rebuilt by position
+    private final Map<Integer, Integer> mPositions = new HashMap<Integer, Integer>();
+
+    /**
+     * Immutable view of every player at one version of the cache
+     */
+    public static class Snapshot {
+        public final List<Player> players; // in the order they were loaded or created
+        public final PlayerIndex index; // positions in players, by name
+        public final long version;
+
+        private Snapshot(List<Player> snapshotPlayers, PlayerIndex snapshotIndex, long snapshotVersion) {
+            players = Collections.unmodifiableList(snapshotPlayers);
+            index = snapshotIndex;
+            version = snapshotVersion;
+        }
+
+        /**
+         * @param name name of the player to find
+         * @return the player, or null if there is none by that name
+         */
+        public Player findByName(String name) {
+            int position = index.positionOf(name);
+            return position >= 0 ? players.get(position) : null;
+        }
+    }
+
+    /**
+     * @return the current snapshot, safe to hold and read from any thread
+     */
+    public Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Replaces the cache's contents, as loaded from the database
+     * @param players every player, which the cache takes ownership of
+     */
+    public synchronized void load(Collection<Player> players) {
+        List<Player> loaded = new ArrayList<Player>(players);
+        mPositions.clear();
+        for (int i = 0; i < loaded.size(); ++i) mPositions.put(loaded.get(i).id, i);
+        publish(loaded, PlayerIndex.build(loaded));
+    }
+
+    /**
+     * @param player newly created player, which the cache takes ownership of
+     */
+    public synchronized void addPlayer(Player player) {
+        if (mPositions.containsKey(player.id)) return;
+
+        List<Player> players = new ArrayList<Player>(mSnapshot.players.size() + 1);
+        players.addAll(mSnapshot.players);
+        mPositions.put(player.id, players.size());
+        PlayerIndex index = mSnapshot.index.withPlayer(player.name, players.size());
+        players.add(player);
+        publish(players, index);
+    }
+
+    /**
+     * Applies changes to players' records, replacing only the players changed. The rest are shared with the
+     * previous snapshot, so a change costs a copy of the list's references, not a reload.
+     * @param deltas changes to apply, to players already in the cache
+     */
+    public synchronized void applyResults(Collection<ResultDelta> deltas) {
+        List<Player> players = new ArrayList<Player>(mSnapshot.players);
+        for (ResultDelta delta : deltas) {
+            Integer position = mPositions.get(delta.playerId);
+            if (position == null) continue; // not one of ours
+
+            Player player = new Player(players.get(position));
+            player.wins += delta.wins;
+            player.losses += delta.losses;
+            player.draws += delta.draws;
+            player.rating += delta.rating;
+            players.set(position, player);
+        }
+        publish(players, mSnapshot.index); // names and positions are unchanged
+    }
+
+    private void publish(List<Player> players, PlayerIndex index) {
+        mSnapshot = new Snapshot(players, index, mSnapshot.version + 1);
+    }
+}
@@ -0,0 +1,126 @@
+package com.gingerman.tictactoe.data;
+
+import com.gingerman.tictactoe.model.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable index of player names, giving their positions in a PlayerCache snapshot's list: exactly by name
+ * through a hash map, and by case insensitive prefix through an array sorted by lower cased name.
+ *
+ * Names and positions never change once a player is in the cache, so an index stays valid for every later
+ * snapshot until a player is added, and adding one copies the index with a single insertion.
+ */
+public class PlayerIndex {
+    private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int order = a.key.compareTo(b.key);
+            return order != 0 ? order : a.name.compareTo(b.name);
+        }
+    };
+
+    public static final PlayerIndex EMPTY = new PlayerIndex(new HashMap<String, Integer>(), new Entry[0]);
+
+    private final Map<String, Integer> positions;
+    private final Entry[] sorted;
+
+    private static class Entry {
+        final String key; // lower cased name, the sort and prefix key
+        final String name;
+        final int position;
+
+        Entry(String entryName, int entryPosition) {
+            key = entryName.toLowerCase(Locale.getDefault());
+            name = entryName;
+            position = entryPosition;
+        }
+    }
+
+    private PlayerIndex(Map<String, Integer> indexPositions, Entry[] indexSorted) {
+        positions = indexPositions;
+        sorted = indexSorted;
+    }
+
+    /**
+     * @param players every player, in snapshot order
+     * @return an index of their names
+     */
+    public static PlayerIndex build(List<Player> players) {
+        Map<String, Integer> positions = new HashMap<String, Integer>(players.size() * 2);
+        Entry[] sorted = new Entry[players.size()];
+        for (int i = 0; i < sorted.length; ++i) {
+            String name = players.get(i).name;
+            positions.put(name, i);
+            sorted[i] = new Entry(name, i);
+        }
+        Arrays.sort(sorted, ENTRY_ORDER);
+        return new PlayerIndex(positions, sorted);
+    }
+
+    /**
+     * @param name name of a new player
+     * @param position its position in the snapshot's list
+     * @return a copy of this index including the player
+     */
+    public PlayerIndex withPlayer(String name, int position) {
+        Map<String, Integer> newPositions = new HashMap<String, Integer>(positions);
+        newPositions.put(name, position);
+
+        Entry entry = new Entry(name, position);
+        int insertAt = Arrays.binarySearch(sorted, entry, ENTRY_ORDER);
+        if (insertAt < 0) insertAt = -insertAt - 1;
+        Entry[] newSorted = new Entry[sorted.length + 1];
+        System.arraycopy(sorted, 0, newSorted, 0, insertAt);
+        newSorted[insertAt] = entry;
+        System.arraycopy(sorted, insertAt, newSorted, insertAt + 1, sorted.length - insertAt);
+
+        return new PlayerIndex(newPositions, newSorted);
+    }
+
+    /**
+     * @param name exact name of a player
+     * @return its position, or -1 if there is no player by that name
+     */
+    public int positionOf(String name) {
+        Integer position = positions.get(name);
+        return position != null ? position : -1;
+    }
+
+    /**
+     * @param prefix start of the names to find, in any case
+     * @param limit most names to return
+     * @return names starting with prefix, in alphabetical order
+     */
+    public List<String> namesStartingWith(String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.getDefault());
+        List<String> names = new ArrayList<String>(Math.min(limit, 16));
+
+        // first entry not before the prefix, by binary search
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].key.compareTo(key) < 0) low = middle + 1;
+            else high = middle;
+        }
+
+        for (int i = low; i < sorted.length && names.size() < limit && sorted[i].key.startsWith(key); ++i) {
+            names.add(sorted[i].name);
+        }
+        return names;
+    }
+
+    /**
+     * @return number of names indexed
+     */
+    public int size() {
+        return sorted.length;
+    }
+}
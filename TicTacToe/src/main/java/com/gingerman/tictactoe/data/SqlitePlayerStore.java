@@ -0,0 +1,113 @@
+package com.gingerman.tictactoe.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.gingerman.tictactoe.model.Player;
+import com.gingerman.tictactoe.rating.EloRating;
+import com.gingerman.tictactoe.rating.GameHistory;
+import com.gingerman.tictactoe.rating.RatingRecalculator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The default store on devices: players and games in the SQLite database, with games written in batches by a
+ * GameResultWriter. As the database indexes every ranking, leaderboard pages are read straight from it.
+ */
+public class SqlitePlayerStore implements PlayerStore {
+    private static final String LOG_TAG = "SqlitePlayerStore";
+
+    private final Context mContext;
+    private final EloRating mElo;
+    private final GameResultWriter mResultWriter;
+
+    /**
+     * @param context context to open the database in, and keep the result journal in the files of
+     * @param elo rating system games are rated with, to recompute stored ratings with if they used another k factor
+     */
+    public SqlitePlayerStore(Context context, EloRating elo) {
+        mContext = context.getApplicationContext();
+        mElo = elo;
+        mResultWriter = new GameResultWriter(mContext.getFilesDir());
+    }
+
+    /**
+     * Opens the database, catches it up with any results lost when we last died, and rerates its games if need be
+     */
+    @Override
+    public void open() {
+        DatabaseManager.getInstance().open(mContext);
+        mResultWriter.recover();
+        recomputeRatingsIfNeeded();
+    }
+
+    @Override
+    public void close() {
+        mResultWriter.destroy();
+        DatabaseManager.getInstance().destroy();
+    }
+
+    @Override
+    public List<Player> fetchAllPlayers() {
+        // queued results must reach the database first, or we'd load stale records
+        mResultWriter.flush();
+        List<Player> players = DatabaseManager.getInstance().fetchAllPlayers();
+        return players != null ? players : Collections.<Player>emptyList();
+    }
+
+    /**
+     * Reads the page from the ranking's index, so it costs as many rows as it skips and returns
+     */
+    @Override
+    public List<Player> fetchLeaderboard(Ranking ranking, int offset, int count) {
+        mResultWriter.flush(); // nothing to do unless results are queued
+        return DatabaseManager.getInstance().fetchLeaderboard(ranking, offset, count);
+    }
+
+    @Override
+    public Player findPlayer(String name) {
+        mResultWriter.flush();
+        return DatabaseManager.getInstance().findPlayer(name);
+    }
+
+    @Override
+    public Player createPlayer(String name) {
+        return DatabaseManager.getInstance().createPlayer(name);
+    }
+
+    @Override
+    public void recordGame(GameRecord game) {
+        mResultWriter.enqueue(game);
+    }
+
+    @Override
+    public void flush() {
+        mResultWriter.flush();
+    }
+
+    // Rates every recorded game again if the k factor has changed since the stored ratings were computed, so they
+    // are as if the new one had been used all along. Games from before the history starts, when the database
+    // was upgraded with results it had no games for, keep the rating they earned at the old k factor.
+    private void recomputeRatingsIfNeeded() {
+        DatabaseManager database = DatabaseManager.getInstance();
+        if (database.getRatingKFactor() == mElo.getKFactor()) return;
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            GameHistory history = database.loadGameHistory();
+            double[] ratings = new RatingRecalculator(mElo, executor, threads, RatingRecalculator.DEFAULT_WINDOW_SIZE)
+                    .recompute(history, database.loadBaseRatings());
+            database.replaceRatings(ratings, mElo.getKFactor());
+            Log.d(LOG_TAG, String.format("Recomputed ratings from %d games", history.size()));
+        } catch (InterruptedException e) {
+            Log.w(LOG_TAG, "Rating recompute interrupted, keeping the stored ratings", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
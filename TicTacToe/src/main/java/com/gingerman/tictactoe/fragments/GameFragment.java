@@ -2,7 +2,9 @@ package com.gingerman.tictactoe.fragments;
 
 import android.app.Activity;
 import android.app.Fragment;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -12,11 +14,17 @@ import android.view.inputmethod.InputMethodManager;
 import android.widget.Button;
 import android.widget.ImageButton;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.gingerman.tictactoe.ApplicationManager;
 import com.gingerman.tictactoe.R;
+import com.gingerman.tictactoe.ai.PerfectPlayTable;
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.ComputerPlayer;
 import com.gingerman.tictactoe.model.Game;
+import com.gingerman.tictactoe.model.GameConfig;
 import com.gingerman.tictactoe.model.Player;
 
 /**
@@ -30,6 +38,9 @@ public class GameFragment extends Fragment {
 
     private TextView mTitleText;
     private ImageView mTitleImage;
+    private ImageButton[] mPositionButtons;
+    private Button mHintButton;
+    private ComputerMoveTask mComputerMoveTask = null;
 
     /**
      * Container Activity must implement this interface (allows us to communicate back)
@@ -71,27 +82,32 @@ public class GameFragment extends Fragment {
             mTitleImage = (ImageView) view.findViewById(R.id.game_turn_img);
             updateTitle();
 
-            // display game state
-            int[] gamePieceIds = {R.id.game_loc_1, R.id.game_loc_2, R.id.game_loc_3,
-                    R.id.game_loc_4, R.id.game_loc_5, R.id.game_loc_6,
-                    R.id.game_loc_7, R.id.game_loc_8, R.id.game_loc_9};
-            for (int i = 0; i < gamePieceIds.length; ++i) {
-                final int position = i;
-                final ImageButton btn = (ImageButton) view.findViewById(gamePieceIds[i]);
-                btn.setImageBitmap(mGame.getImageForGamePosition(i));
-                btn.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View v) {
-                        Bitmap bmp = mGame.claimGamePosition(position);
-                        if (bmp == null) Toast.makeText(getActivity(), R.string.illegal_move, 2500).show();
-                        else {
-                            btn.setImageBitmap(bmp);
-                            updateTitle();
+            // display game state, one row of position buttons per board row
+            GameConfig config = mGame.getConfig();
+            int positionSize = getPositionSize(config);
+            LinearLayout boardLayout = (LinearLayout) view.findViewById(R.id.game_board);
+            mPositionButtons = new ImageButton[config.getSize()];
+            for (int row = 0; row < config.rows; ++row) {
+                LinearLayout rowLayout = new LinearLayout(getActivity());
+                rowLayout.setOrientation(LinearLayout.HORIZONTAL);
+                for (int column = 0; column < config.columns; ++column) {
+                    final int position = row * config.columns + column;
+                    final ImageButton btn = new ImageButton(getActivity());
+                    btn.setScaleType(ImageView.ScaleType.FIT_CENTER);
+                    btn.setBackgroundResource(R.drawable.blank);
+                    btn.setImageBitmap(mGame.getImageForGamePosition(position));
+                    btn.setOnClickListener(new View.OnClickListener() {
+                        @Override
+                        public void onClick(View v) {
+                            if (mComputerMoveTask != null) return; // not our turn, computer is still thinking
+                            if (!mGame.isAttached()) return; // players not restored yet
+                            claimPosition(position);
                         }
-                        // check if the game is complete
-                        mGame.checkCompleteness(mListener);
-                    }
-                });
+                    });
+                    mPositionButtons[position] = btn;
+                    rowLayout.addView(btn, new LinearLayout.LayoutParams(positionSize, positionSize));
+                }
+                boardLayout.addView(rowLayout);
             }
 
             Button quitBtn = (Button) view.findViewById(R.id.quit_game_btn);
@@ -101,11 +117,113 @@ public class GameFragment extends Fragment {
                     if (mListener != null) mListener.onGameQuit(mGame);
                 }
             });
+
+            // standard games are solved, so offer hints from the perfect play table
+            mHintButton = (Button) view.findViewById(R.id.hint_btn);
+            mHintButton.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    showHint();
+                }
+            });
+            updateHintButton();
+
+            // computer may be first to play
+            startComputerMoveIfNeeded();
         }
 
         return view;
     }
 
+    // Helper method to show every position's mark and whose turn it is, as once a restored game is attached
+    private void updateBoard() {
+        for (int position = 0; position < mPositionButtons.length; ++position) {
+            mPositionButtons[position].setImageBitmap(mGame.getImageForGamePosition(position));
+        }
+        updateTitle();
+        updateHintButton();
+    }
+
+    // Helper method to play a move for the current player, human or computer, and update the board
+    private void claimPosition(int position) {
+        Bitmap bmp = mGame.claimGamePosition(position);
+        if (bmp == null) Toast.makeText(getActivity(), R.string.illegal_move, 2500).show();
+        else {
+            ApplicationManager.getsInstance().moveClaimed(mGame, position);
+            mPositionButtons[position].setImageBitmap(bmp);
+            updateTitle();
+            updateHintButton();
+        }
+        // check if the game is complete
+        mGame.checkCompleteness(mListener);
+        startComputerMoveIfNeeded();
+    }
+
+    // Helper method to show the hint button only when a human is to play a standard game
+    private void updateHintButton() {
+        boolean available = GameConfig.STANDARD.equals(mGame.getConfig()) && !mGame.isComplete()
+                && !(mGame.current instanceof ComputerPlayer);
+        mHintButton.setVisibility(available ? View.VISIBLE : View.GONE);
+    }
+
+    // Helper method to suggest the best move for the current player, and how the game will go from there
+    private void showHint() {
+        PerfectPlayTable table = ApplicationManager.getsInstance().getPerfectPlayTable();
+        if (table == null || mGame.isComplete()) return;
+
+        Board board = mGame.copyBoard();
+        int move = table.getBestMove(board);
+        if (move < 0) return;
+        int value = table.getValue(board);
+        int outcome = value == PerfectPlayTable.VALUE_WIN ? R.string.hint_win :
+                (value == PerfectPlayTable.VALUE_LOSS ? R.string.hint_loss : R.string.hint_draw);
+        int columns = mGame.getConfig().columns;
+        Toast.makeText(getActivity(), getString(R.string.hint_move, move / columns + 1, move % columns + 1,
+                getString(outcome)), 2500).show();
+    }
+
+    // Helper method to let a computer player take its turn, thinking on a background thread
+    private void startComputerMoveIfNeeded() {
+        if (mGame.isComplete() || !(mGame.current instanceof ComputerPlayer) || mComputerMoveTask != null) return;
+
+        mComputerMoveTask = new ComputerMoveTask((ComputerPlayer) mGame.current, mGame.copyBoard());
+        // don't queue behind database work on the default serial executor
+        mComputerMoveTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * AsyncTask to search for a computer player's move on a copy of the board, then play it on the ui thread
+     */
+    private class ComputerMoveTask extends AsyncTask<Void, Void, Integer> {
+        private final ComputerPlayer mPlayer;
+        private final Board mBoard;
+
+        public ComputerMoveTask(ComputerPlayer player, Board board) {
+            mPlayer = player;
+            mBoard = board;
+        }
+
+        @Override
+        protected Integer doInBackground(Void... params) {
+            return mPlayer.strategy.selectMove(mBoard);
+        }
+
+        @Override
+        protected void onPostExecute(Integer position) {
+            mComputerMoveTask = null;
+            if (position >= 0) claimPosition(position);
+        }
+    }
+
+    // Helper method to fit the board to the screen width, without growing positions past their normal size
+    private int getPositionSize(GameConfig config) {
+        Resources resources = getResources();
+        int maxSize = resources.getDimensionPixelSize(R.dimen.game_position_max_size);
+        int available = resources.getDisplayMetrics().widthPixels
+                - 2 * resources.getDimensionPixelSize(R.dimen.game_board_margin);
+        return Math.min(maxSize, available / Math.max(config.rows, config.columns));
+    }
+
     // Helper method to update the players turn indicator
     private void updateTitle() {
         mTitleText.setText(String.format("%s's turn!", mGame.current.name));
@@ -116,10 +234,42 @@ public class GameFragment extends Fragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        final Bundle bundle = getArguments();
+        // the game as last saved, if it has been played since the arguments were set
+        final Bundle bundle = savedInstanceState != null && savedInstanceState.containsKey(BUNDLE_IDS.game) ?
+                savedInstanceState : getArguments();
         if (bundle == null) return;
 
         mGame = bundle.getParcelable(BUNDLE_IDS.game);
+        if (mGame == null || mGame.isAttached()) return;
+
+        // the parcel only refers to the players and marks, which are attached once the manager has them
+        ApplicationManager.getsInstance().whenInitialized(new ApplicationManager.ApplicationManagerListener() {
+            @Override
+            public void onComplete() {
+                if (getActivity() == null) return; // destroyed while waiting
+                ApplicationManager.getsInstance().attachRestoredGame(mGame);
+                if (mPositionButtons == null) return; // shown attached when the view is created
+                updateBoard();
+                startComputerMoveIfNeeded();
+            }
+
+            @Override
+            public void onError(String msg) {
+                Log.e(LOG_TAG, "Restored game can't be played: " + msg);
+            }
+        });
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (mGame != null) outState.putParcelable(BUNDLE_IDS.game, mGame);
+    }
+
+    @Override
+    public void onDestroy() {
+        if (mComputerMoveTask != null) mComputerMoveTask.cancel(false);
+        super.onDestroy();
     }
 
     @Override
@@ -1,6 +1,5 @@
 package com.gingerman.tictactoe.model;
 
-import android.content.ContentValues;
 import android.graphics.Bitmap;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -9,37 +8,117 @@ import android.util.Log;
 import com.gingerman.tictactoe.fragments.GameFragment;
 
 /**
- * Represents a game being played between two players, possibly with a winner declared.
- * Encapsulates game behavior and logic for whether or not a move is legal, and if the game is complete.
+ * Represents a game being played between two players, possibly with a winner declared, as shown on the board.
+ * The rules, turns and result are a Match's, and this adds the marks drawn for each player.
  */
-public class Game implements Parcelable {
+public class Game extends Match implements Parcelable {
     private static final String LOG_TAG = "Game";
 
-    public Player player1;
-    public Player player2;
-    public Player winner = null;
-    public Player current;
+    // flags written to parcels
+    private static final int COMPUTER_OPPONENT = 1;
+    private static final int RESULT_REPORTED = 2;
 
-    private int[] gameBoardState = new int[9];
     private Bitmap xMark;
     private Bitmap oMark;
+    private boolean attached = true; // false if restored from a parcel, until attach is called
+    private boolean computerOpponent = false; // as parcelled, until attach makes player 2 a ComputerPlayer
 
-    private static final int PLAYER_1_MARK = 1;
-    private static final int PLAYER_2_MARK = 2;
+    /**
+     * Construct a new standard 3x3 game with empty game state
+     * @param gamePlayer1 player 1 (x)
+     * @param gamePlayer2 player 2 (o)
+     * @param xBmp bitmap to use as x player's mark
+     * @param oBmp bitmap to use as o player's mark
+     */
+    public Game(Player gamePlayer1, Player gamePlayer2, Bitmap xBmp, Bitmap oBmp) {
+        this(gamePlayer1, gamePlayer2, GameConfig.STANDARD, xBmp, oBmp);
+    }
 
     /**
      * Construct a new game with empty game state
      * @param gamePlayer1 player 1 (x)
      * @param gamePlayer2 player 2 (o)
+     * @param config board size and line length for this game
      * @param xBmp bitmap to use as x player's mark
      * @param oBmp bitmap to use as o player's mark
      */
-    public Game(Player gamePlayer1, Player gamePlayer2, Bitmap xBmp, Bitmap oBmp) {
-        player1 = gamePlayer1;
-        player2 = gamePlayer2;
-        current = player1;
+    public Game(Player gamePlayer1, Player gamePlayer2, GameConfig config, Bitmap xBmp, Bitmap oBmp) {
+        this(gamePlayer1, gamePlayer2, config, System.currentTimeMillis(), new int[0], 0, xBmp, oBmp);
+    }
+
+    /**
+     * Construct a game part way through, as it is restored or resumed, replaying the moves made so far
+     * @param gamePlayer1 player 1 (x)
+     * @param gamePlayer2 player 2 (o)
+     * @param config board size and line length for this game
+     * @param startTime wall clock time in ms the game was started
+     * @param moves positions claimed so far, in order
+     * @param count number of moves
+     * @param xBmp bitmap to use as x player's mark
+     * @param oBmp bitmap to use as o player's mark
+     */
+    public Game(Player gamePlayer1, Player gamePlayer2, GameConfig config, long startTime, int[] moves, int count,
+                Bitmap xBmp, Bitmap oBmp) {
+        super(gamePlayer1, gamePlayer2, config, startTime, moves, count);
+        xMark = xBmp;
+        oMark = oBmp;
+    }
+
+    public static final Parcelable.Creator<Game> CREATOR = new Parcelable.Creator<Game>() {
+        @Override
+        public Game createFromParcel(Parcel in) {
+            // the parcel only refers to the players, so they stand in until attach gives them their records
+            GameConfig config = GameConfig.valueOf(in.readInt());
+            int flags = in.readInt();
+            Player player1 = new Player(in.readInt(), in.readString());
+            Player player2 = new Player(in.readInt(), in.readString());
+            long startedAt = in.readLong();
+            long finishedAt = in.readLong();
+
+            int[] moves = new int[config.getSize()];
+            int count = MoveCodec.canPack(config) ? MoveCodec.unpack(in.readLong(), moves) :
+                    MoveCodec.decode(in.createByteArray(), moves);
+            Game game = new Game(player1, player2, config, startedAt, moves, count, null, null);
+            game.finishedAt = finishedAt;
+            game.resultReported = (flags & RESULT_REPORTED) != 0;
+            game.computerOpponent = (flags & COMPUTER_OPPONENT) != 0;
+            game.attached = false;
+            return game;
+        }
+
+        @Override
+        public Game[] newArray(int size) {
+            return new Game[size];
+        }
+    };
+
+    /**
+     * @return false if the game was restored from a parcel and is yet to be attached, so it has no marks and its
+     * players have no records
+     */
+    public boolean isAttached() {
+        return attached;
+    }
+
+    /**
+     * @return true if the computer plays as player 2
+     */
+    public boolean isComputerOpponent() {
+        return computerOpponent || player2 instanceof ComputerPlayer;
+    }
+
+    /**
+     * Completes a game restored from a parcel, once the players are loaded and the marks decoded
+     * @param restoredPlayer1 player 1, with their record
+     * @param restoredPlayer2 player 2, with their record, as a ComputerPlayer if isComputerOpponent
+     * @param xBmp bitmap to use as x player's mark
+     * @param oBmp bitmap to use as o player's mark
+     */
+    public void attach(Player restoredPlayer1, Player restoredPlayer2, Bitmap xBmp, Bitmap oBmp) {
+        replacePlayers(restoredPlayer1, restoredPlayer2);
         xMark = xBmp;
         oMark = oBmp;
+        attached = true;
     }
 
     /**
@@ -47,9 +126,10 @@ public class Game implements Parcelable {
      * @return the image to load into this position, marking whether or not the spot is taken
      */
     public Bitmap getImageForGamePosition(int position) {
-        if (position >= gameBoardState.length || position < 0) return null;
-        return gameBoardState[position] == PLAYER_1_MARK ? xMark :
-                (gameBoardState[position] == PLAYER_2_MARK ? oMark : null);
+        if (position >= board.getSize() || position < 0) return null;
+        int mark = board.getMark(position);
+        return mark == Board.PLAYER_1 ? xMark :
+                (mark == Board.PLAYER_2 ? oMark : null);
     }
 
     /**
@@ -65,18 +145,10 @@ public class Game implements Parcelable {
      * @return the bitmap to claim the spot, if move was legal, or null if it was illegal
      */
     public Bitmap claimGamePosition(int position) {
-        if (position >= gameBoardState.length || position < 0 || checkCompleteness()) return null;
-
-        if (gameBoardState[position] > 0) return null; // illegal move, already claimed
-        gameBoardState[position] = current == player1 ? PLAYER_1_MARK : PLAYER_2_MARK;
         Bitmap bmp = getImageForCurrentPlayer();
+        if (!claim(position)) return null; // illegal move, off the board, already claimed or game over
 
-        // is the game over, or shall we continue
-        if (checkCompleteness()) {
-            Log.d(LOG_TAG, "game complete, prompting listener");
-        } else {
-            current = current == player1 ? player2 : player1; // new players turn
-        }
+        if (isComplete()) Log.d(LOG_TAG, "game complete, prompting listener");
         return bmp;
     }
 
@@ -85,62 +157,37 @@ public class Game implements Parcelable {
      * @param listener callback to report that the game is complete, if it is so
      */
     public void checkCompleteness(GameFragment.OnGameListener listener) {
-        if (!checkCompleteness() || listener == null) return;
-
-        // update our copy of the player
-        if (winner == player1) {
-            player1.wins++;
-            player2.losses++;
-        } else if (winner == player2) {
-            player1.losses++;
-            player2.wins++;
-        } else {
-            player1.draws++;
-            player2.draws++;
-        }
-
+        if (listener == null || !reportResult()) return; // our copies of the players are credited by reportResult
         listener.onGameComplete(this);
     }
-    private boolean checkCompleteness() {
-        // wins occur if three in a row, so check all cases
-        if (positionStatus(0,1,2) ||
-                positionStatus(3,4,5) ||
-                positionStatus(6,7,8) ||
-                positionStatus(0,3,6) ||
-                positionStatus(1,4,7) ||
-                positionStatus(2,5,8) ||
-                positionStatus(0,4,8) ||
-                positionStatus(2,4,6)) {
-            winner = current;
-            return true; // win has occurred
-        }
-        for (int state : gameBoardState) {
-            if (state == 0) return false; // at least one empty spot left
-        }
-        return true; // game board is full
-    }
-
-    /**
-     * @param p1 first position
-     * @param p2 second position
-     * @param p3 third position
-     * @return true if position's are owned by the same user. positions must be in scope of position array.
-     */
-    private boolean positionStatus(int p1, int p2, int p3) {
-        int v1 = gameBoardState[p1];
-        return v1 > 0 && v1 == gameBoardState[p2] && v1 == gameBoardState[p3];
-    }
 
     @Override
     public int describeContents() {
         return 0;
     }
 
+    /**
+     * Writes the game compactly: players by id and name only, as their records are kept by ApplicationManager,
+     * and the moves packed into a long where MoveCodec can, otherwise as varints. The winner, player to move
+     * and board are all replayed from the moves.
+     */
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeParcelable(player1, 0);
-        dest.writeParcelable(player2, 0);
-        dest.writeParcelable(winner, 0);
-        dest.writeIntArray(gameBoardState);
+        GameConfig config = board.getConfig();
+        dest.writeInt(config.getPackedValue());
+        dest.writeInt((isComputerOpponent() ? COMPUTER_OPPONENT : 0) | (resultReported ? RESULT_REPORTED : 0));
+        dest.writeInt(player1.id);
+        dest.writeString(player1.name);
+        dest.writeInt(player2.id);
+        dest.writeString(player2.name);
+        dest.writeLong(startedAt);
+        dest.writeLong(finishedAt);
+
+        int[] moves = getMoves();
+        if (MoveCodec.canPack(config)) {
+            dest.writeLong(MoveCodec.pack(moves, moves.length));
+        } else {
+            dest.writeByteArray(MoveCodec.encode(moves, moves.length));
+        }
     }
 }
@@ -0,0 +1,106 @@
+package com.gingerman.tictactoe.benchmarks;
+
+import com.gingerman.tictactoe.ai.RandomStrategy;
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+import com.gingerman.tictactoe.model.Match;
+import com.gingerman.tictactoe.model.Player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The rules engine: claiming positions and checking for the end of the game on a Board, whole random games, and
+ * a recorded game played through Match, which Game.claimGamePosition and Game.checkCompleteness delegate to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+    @Param({"3x3x3", "4x4x4", "15x15x5"})
+    public String config;
+
+    private GameConfig gameConfig;
+    private Board board; // reset for every game
+    private Board middleBoard; // left in the middle of the recorded game
+    private RandomStrategy random;
+    private int[] moves; // a complete game, replayed by claimGame
+    private int middleMove; // a legal move from the middle of that game
+
+    @Setup
+    public void setUp() {
+        String[] dimensions = config.split("x");
+        gameConfig = GameConfig.valueOf(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]),
+                Integer.parseInt(dimensions[2]));
+        board = new Board(gameConfig);
+        random = new RandomStrategy(42);
+
+        // the same random game every run, so every fork measures the same work
+        RandomStrategy recorder = new RandomStrategy(7);
+        while (!board.isComplete()) board.play(recorder.selectMove(board));
+        moves = new int[board.getMoveCount()];
+        for (int i = 0; i < moves.length; ++i) moves[i] = board.getMove(i);
+        board.reset();
+        middleBoard = new Board(gameConfig);
+        for (int i = 0; i < moves.length / 2; ++i) middleBoard.play(moves[i]);
+        middleMove = moves[moves.length / 2];
+    }
+
+    /**
+     * A single claim and completeness check from the middle of a game, taken back to keep the position
+     */
+    @Benchmark
+    public boolean claimGamePosition() {
+        boolean complete = middleBoard.play(middleMove) && middleBoard.isComplete();
+        middleBoard.undo();
+        return complete;
+    }
+
+    /**
+     * Every claim and completeness check of a recorded game, from a reset board
+     */
+    @Benchmark
+    public int claimGame() {
+        board.reset();
+        for (int move : moves) {
+            board.play(move);
+            if (board.isComplete()) break;
+        }
+        return board.getWinner();
+    }
+
+    /**
+     * Every move of the recorded game through a new Match, as the app plays it, then its result credited
+     */
+    @Benchmark
+    public int playMatch() {
+        Match match = new Match(new Player(1, "Player One"), new Player(2, "Player Two"), gameConfig);
+        for (int move : moves) match.claim(move);
+        match.reportResult();
+        return match.getWinnerMark();
+    }
+
+    /**
+     * A whole game of random moves, including choosing them
+     */
+    @Benchmark
+    public int randomPlayout() {
+        board.reset();
+        while (!board.isComplete()) board.play(random.selectMove(board));
+        return board.getWinner();
+    }
+}
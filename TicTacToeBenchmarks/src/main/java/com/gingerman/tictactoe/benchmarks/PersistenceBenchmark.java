@@ -0,0 +1,274 @@
+package com.gingerman.tictactoe.benchmarks;
+
+import com.gingerman.tictactoe.data.GameRecord;
+import com.gingerman.tictactoe.data.ResultDelta;
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+import com.gingerman.tictactoe.model.Player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An approximation of DatabaseManager's createPlayer, applyResults, fetchAllPlayers, fetchLeaderboard and
+ * getRank, against a file backed SQLite database through sqlite-jdbc, as Android's SQLite classes can't run on
+ * the desktop JVM. The schema and SQL are copied by hand from DatabaseManager and Ranking as of database version
+ * 6, so must be kept in step with them. The records written and rows read are the engine's own GameRecord,
+ * ResultDelta and Player.
+ *
+ * The perCall benchmarks follow the original DatabaseManager, opening the database and formatting SQL for every
+ * call. The persistent ones follow the current one: a single write ahead logging connection, with statements
+ * prepared once and run with bound arguments, adding each result to the records in SQL.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+    private static final int PLAYER_COUNT = 100;
+    private static final int PAGE_SIZE = 50; // as MainActivity reads the results list
+    private static final int[] MOVES = new int[]{4, 0, 8, 2, 1, 7, 6, 3, 5}; // a standard game, drawn
+
+    private File file;
+    private String url;
+    private int nextName = 0;
+    private int[] stats = new int[3];
+
+    private Connection connection;
+    private PreparedStatement insertPlayer;
+    private PreparedStatement updatePlayerStats;
+    private PreparedStatement insertGame;
+    private PreparedStatement selectAllPlayers;
+    private PreparedStatement selectLeaderboard;
+    private PreparedStatement selectRank;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        file = File.createTempFile("tictactoe", ".db");
+        url = "jdbc:sqlite:" + file.getPath();
+        Connection db = DriverManager.getConnection(url);
+        try {
+            Statement statement = db.createStatement();
+            statement.execute("CREATE TABLE player ( id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE, "
+                    + "wins INTEGER DEFAULT 0, losses INTEGER DEFAULT 0, draws INTEGER DEFAULT 0, "
+                    + "played INTEGER DEFAULT 0, win_rate REAL DEFAULT 0, rating REAL DEFAULT 1500, "
+                    + "base_rating REAL DEFAULT 1500 );");
+            statement.execute("CREATE INDEX player_by_wins ON player (wins, win_rate);");
+            statement.execute("CREATE INDEX player_by_win_rate ON player (win_rate, played);");
+            statement.execute("CREATE INDEX player_by_played ON player (played, wins);");
+            statement.execute("CREATE INDEX player_by_rating ON player (rating, played);");
+            statement.execute("CREATE TABLE game ( id INTEGER PRIMARY KEY, player1 INTEGER NOT NULL, "
+                    + "player2 INTEGER NOT NULL, winner INTEGER NOT NULL, config INTEGER NOT NULL, "
+                    + "started_at INTEGER NOT NULL, finished_at INTEGER NOT NULL, moves NOT NULL );");
+            statement.execute("CREATE INDEX game_by_player1 ON game (player1, player2);");
+            statement.execute("CREATE INDEX game_by_player2 ON game (player2, player1);");
+            for (int i = 1; i <= PLAYER_COUNT; ++i) {
+                // varied records, so rankings aren't all ties
+                int wins = i % 17;
+                int losses = i % 13;
+                int draws = i % 5;
+                statement.execute(String.format("INSERT INTO player (id, name, wins, losses, draws, played, win_rate, rating) "
+                        + "VALUES (%1$d, 'Seed %1$d', %2$d, %3$d, %4$d, %5$d, %2$d * 1.0 / max(%5$d, 1), %6$d);",
+                        i, wins, losses, draws, wins + losses + draws, 1300 + (i * 37) % 400));
+            }
+            statement.close();
+        } finally {
+            db.close();
+        }
+
+        connection = DriverManager.getConnection(url);
+        Statement statement = connection.createStatement();
+        statement.execute("PRAGMA journal_mode=WAL;");
+        statement.close();
+        insertPlayer = connection.prepareStatement("INSERT INTO player (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+        updatePlayerStats = connection.prepareStatement("UPDATE player SET wins = wins + ?1, losses = losses + ?2, draws = draws + ?3, "
+                + "played = played + ?1 + ?2 + ?3, win_rate = (wins + ?1) * 1.0 / max(played + ?1 + ?2 + ?3, 1), "
+                + "rating = rating + ?5 WHERE id = ?4");
+        insertGame = connection.prepareStatement("INSERT INTO game (player1, player2, winner, config, started_at, "
+                + "finished_at, moves) VALUES (?, ?, ?, ?, ?, ?, ?)");
+        selectAllPlayers = connection.prepareStatement("SELECT * FROM player");
+        selectLeaderboard = connection.prepareStatement("SELECT * FROM player ORDER BY rating DESC, played DESC, id DESC LIMIT ? OFFSET ?");
+        selectRank = connection.prepareStatement("SELECT 1"
+                + " + (SELECT COUNT(*) FROM player WHERE rating > p.rating)"
+                + " + (SELECT COUNT(*) FROM player WHERE rating = p.rating AND played > p.played)"
+                + " + (SELECT COUNT(*) FROM player WHERE rating = p.rating AND played = p.played AND id > p.id)"
+                + " FROM player p WHERE p.id = ?");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        insertPlayer.close();
+        updatePlayerStats.close();
+        insertGame.close();
+        selectAllPlayers.close();
+        selectLeaderboard.close();
+        selectRank.close();
+        connection.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public int perCallCreatePlayer() throws SQLException {
+        Connection db = DriverManager.getConnection(url);
+        try {
+            db.setAutoCommit(false);
+            Statement statement = db.createStatement();
+            statement.executeUpdate(String.format("INSERT INTO player (name) VALUES ('Player %d');", ++nextName));
+            ResultSet keys = statement.getGeneratedKeys();
+            int id = keys.next() ? keys.getInt(1) : -1;
+            keys.close();
+            statement.close();
+            db.commit();
+            return id;
+        } finally {
+            db.close();
+        }
+    }
+
+    @Benchmark
+    public int perCallSerializeGameResult() throws SQLException {
+        stats[0]++;
+        stats[1]++;
+        stats[2]++;
+        Connection db = DriverManager.getConnection(url);
+        try {
+            db.setAutoCommit(false);
+            Statement statement = db.createStatement();
+            int rows = statement.executeUpdate(String.format("UPDATE player SET name = 'Seed 1', wins = %d, losses = %d, draws = %d WHERE id = %s",
+                    stats[0], stats[1], stats[2], 1));
+            rows += statement.executeUpdate(String.format("UPDATE player SET name = 'Seed 2', wins = %d, losses = %d, draws = %d WHERE id = %s",
+                    stats[1], stats[0], stats[2], 2));
+            statement.close();
+            db.commit();
+            return rows;
+        } finally {
+            db.close();
+        }
+    }
+
+    @Benchmark
+    public List<Player> perCallFetchAllPlayers() throws SQLException {
+        Connection db = DriverManager.getConnection(url);
+        try {
+            Statement statement = db.createStatement();
+            List<Player> players = readPlayers(statement.executeQuery("SELECT *  FROM   player; "));
+            statement.close();
+            return players;
+        } finally {
+            db.close();
+        }
+    }
+
+    @Benchmark
+    public int persistentCreatePlayer() throws SQLException {
+        insertPlayer.setString(1, "Player " + (++nextName));
+        insertPlayer.executeUpdate();
+        ResultSet keys = insertPlayer.getGeneratedKeys();
+        int id = keys.next() ? keys.getInt(1) : -1;
+        keys.close();
+        return id;
+    }
+
+    /**
+     * One game's row and its changes to both records in a transaction, as applyResults writes a batch of one
+     */
+    @Benchmark
+    public int persistentSerializeGameResult() throws SQLException {
+        GameRecord game = new GameRecord(1, 2, Board.EMPTY, GameConfig.STANDARD, 0, 0, MOVES, 0);
+        connection.setAutoCommit(false);
+        try {
+            insertGame.setInt(1, game.player1Id);
+            insertGame.setInt(2, game.player2Id);
+            insertGame.setInt(3, game.winner);
+            insertGame.setInt(4, game.config.getPackedValue());
+            insertGame.setLong(5, game.startedAt);
+            insertGame.setLong(6, game.finishedAt);
+            if (game.isPacked()) {
+                insertGame.setLong(7, game.getPackedMoves());
+            } else {
+                insertGame.setBytes(7, game.getEncodedMoves());
+            }
+            int rows = insertGame.executeUpdate();
+            for (ResultDelta delta : game.getDeltas()) rows += updateStats(delta);
+            connection.commit();
+            return rows;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Benchmark
+    public List<Player> persistentFetchAllPlayers() throws SQLException {
+        return readPlayers(selectAllPlayers.executeQuery());
+    }
+
+    /**
+     * The first page by rating, as DatabaseManager.fetchLeaderboard reads it from the ranking's index
+     */
+    @Benchmark
+    public List<Player> persistentLeaderboardPage() throws SQLException {
+        selectLeaderboard.setInt(1, PAGE_SIZE);
+        selectLeaderboard.setInt(2, 0);
+        return readPlayers(selectLeaderboard.executeQuery());
+    }
+
+    /**
+     * A player's rank by rating, as DatabaseManager.getRank counts it from the ranking's index
+     */
+    @Benchmark
+    public int persistentRank() throws SQLException {
+        selectRank.setInt(1, PLAYER_COUNT / 2);
+        ResultSet result = selectRank.executeQuery();
+        int rank = result.next() ? result.getInt(1) : 0;
+        result.close();
+        return rank;
+    }
+
+    private int updateStats(ResultDelta delta) throws SQLException {
+        // adds to the record, as applyResults does
+        updatePlayerStats.setInt(1, delta.wins);
+        updatePlayerStats.setInt(2, delta.losses);
+        updatePlayerStats.setInt(3, delta.draws);
+        updatePlayerStats.setInt(4, delta.playerId);
+        updatePlayerStats.setDouble(5, delta.rating);
+        return updatePlayerStats.executeUpdate();
+    }
+
+    // as DatabaseManager.readPlayer reads each row
+    private static List<Player> readPlayers(ResultSet cursor) throws SQLException {
+        List<Player> players = new ArrayList<Player>();
+        while (cursor.next()) {
+            Player player = new Player(cursor.getInt("id"), cursor.getString("name"));
+            player.wins = cursor.getInt("wins");
+            player.losses = cursor.getInt("losses");
+            player.draws = cursor.getInt("draws");
+            player.rating = cursor.getDouble("rating");
+            players.add(player);
+        }
+        cursor.close();
+        return players;
+    }
+}
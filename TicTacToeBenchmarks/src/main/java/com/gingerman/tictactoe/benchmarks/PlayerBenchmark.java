@@ -0,0 +1,81 @@
+package com.gingerman.tictactoe.benchmarks;
+
+import com.gingerman.tictactoe.data.Ranking;
+import com.gingerman.tictactoe.model.Player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Player construction and copying, as stores create players and the app hands games copies of them, and ranking
+ * a page of the leaderboard in memory, as MemoryPlayerStore and GameLog serve it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerBenchmark {
+    private static final int PLAYER_COUNT = 1000;
+    private static final int PAGE_SIZE = 50; // as MainActivity reads the results list
+
+    private Player player;
+    private List<Player> players;
+    private int nextId = 0;
+
+    @Setup
+    public void setUp() {
+        player = new Player(1, "Player One");
+        player.wins = 12;
+        player.losses = 7;
+        player.draws = 30;
+
+        // varied records, so rankings aren't all ties
+        players = new ArrayList<Player>(PLAYER_COUNT);
+        for (int i = 1; i <= PLAYER_COUNT; ++i) {
+            Player seed = new Player(i, "Seed " + i);
+            seed.wins = i % 17;
+            seed.losses = i % 13;
+            seed.draws = i % 5;
+            seed.rating = 1500 + (i * 37) % 400 - 200;
+            players.add(seed);
+        }
+    }
+
+    /**
+     * new Player(id, name), as createPlayer does
+     */
+    @Benchmark
+    public Player construct() {
+        return new Player(++nextId, "Player One");
+    }
+
+    /**
+     * new Player(player), as a game is given its own copy of each player
+     */
+    @Benchmark
+    public Player copy() {
+        return new Player(player);
+    }
+
+    /**
+     * The first page by rating, as Ranking.page sorts it for the in memory stores
+     */
+    @Benchmark
+    public List<Player> leaderboardPage() {
+        return Ranking.RATING.page(players, 0, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,90 @@
+package com.gingerman.tictactoe.benchmarks;
+
+import com.gingerman.tictactoe.data.GameRecord;
+import com.gingerman.tictactoe.data.MemoryPlayerStore;
+import com.gingerman.tictactoe.data.PlayerStore;
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+import com.gingerman.tictactoe.model.Player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The PlayerStore headless simulations and load tests play against, MemoryPlayerStore: games recorded into one
+ * store from several threads at once, as a load test records them, and every player read back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreBenchmark {
+    private static final int PLAYER_COUNT = 1000;
+    private static final int[] MOVES = new int[]{4, 0, 8, 2, 1, 7, 6, 3, 5}; // a standard game, drawn
+
+    /**
+     * One store, shared by every thread
+     */
+    @State(Scope.Benchmark)
+    public static class Store {
+        PlayerStore store;
+        int[] ids;
+
+        @Setup
+        public void setUp() {
+            store = new MemoryPlayerStore();
+            ids = new int[PLAYER_COUNT];
+            for (int i = 0; i < ids.length; ++i) ids[i] = store.createPlayer("Player " + i).id;
+        }
+    }
+
+    /**
+     * Each thread's choice of players and outcomes
+     */
+    @State(Scope.Thread)
+    public static class Games {
+        Random random;
+
+        @Setup
+        public void setUp() {
+            random = new Random(Thread.currentThread().getId());
+        }
+    }
+
+    /**
+     * A game between two random players, recorded by four threads at once
+     */
+    @Benchmark
+    @Threads(4)
+    public GameRecord recordGame(Store store, Games games) {
+        int player1 = store.ids[games.random.nextInt(PLAYER_COUNT)];
+        int player2 = store.ids[games.random.nextInt(PLAYER_COUNT)];
+        int winner = games.random.nextInt(3); // Board.EMPTY, PLAYER_1 or PLAYER_2
+        GameRecord game = new GameRecord(player1, player2, winner, GameConfig.STANDARD, 0, 0, MOVES,
+                winner == Board.EMPTY ? 0 : winner == Board.PLAYER_1 ? 16 : -16);
+        store.store.recordGame(game);
+        return game;
+    }
+
+    /**
+     * Every player and their record, as the app loads them into its cache
+     */
+    @Benchmark
+    public List<Player> fetchAllPlayers(Store store) {
+        return store.store.fetchAllPlayers();
+    }
+}
@@ -0,0 +1,386 @@
+package com.gingerman.tictactoe.ai;
+
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.BoardSymmetry;
+import com.gingerman.tictactoe.model.GameConfig;
+
+import java.util.Arrays;
+
+/**
+ * Chooses moves with a negamax search using alpha-beta pruning, deepening one ply at a time until the
+ * time budget runs out, and answering with the best move of the deepest completed search.
+ *
+ * Positions are cached in a fixed size transposition table, keyed on boards of up to 64 positions by their
+ * canonical form under rotation and reflection so that symmetric positions share an entry, and on larger
+ * boards by the Zobrist hash. Moves are
+ * ordered by the cached best move first, then by how often they caused cutoffs, then by closeness to the
+ * centre. Small boards are searched to the end of the game; on larger boards only positions near claimed
+ * ones are considered, and positions at the search horizon are scored by counting open lines.
+ *
+ * Instances hold search state and are not thread safe, so each computer player needs its own.
+ */
+public class AlphaBetaStrategy implements MoveStrategy {
+    public static final int DEFAULT_TABLE_BITS = 16;
+
+    private static final int WIN_SCORE = 1000000;
+    private static final int INFINITY = 2 * WIN_SCORE;
+    // scores past this are wins or losses, adjusted by their distance from the end of the game
+    private static final int WIN_THRESHOLD = WIN_SCORE - 1000;
+
+    // boards up to this size consider every empty position, larger boards only those near claimed positions
+    private static final int FULL_WIDTH_SIZE = 25;
+    private static final int NEIGHBOUR_RADIUS = 2;
+
+    // score for an open line holding n of one player's positions is 8^(n-1), capped for long lines
+    private static final int MAX_LINE_SCORE = 4096;
+
+    private static final int BOUND_EXACT = 0;
+    private static final int BOUND_LOWER = 1;
+    private static final int BOUND_UPPER = 2;
+    private static final int MAX_TABLE_DEPTH = 0xFF;
+
+    private final long timeBudgetNanos;
+
+    // transposition table, one entry per slot, replaced whenever a search stores a new result there
+    private final int tableMask;
+    private final long[] tableKeys;
+    private final int[] tableScores;
+    private final int[] tableData; // best move + 1 in the low 16 bits, then 8 bits of depth, then the bound
+    private final long[] canonicalBits = new long[2];
+
+    // per board config search state, rebuilt only when the config changes
+    private GameConfig config = null;
+    private int size;
+    private int[][] moveLists;
+    private int[][] moveScores;
+    private int[] history;
+    private int[] centrality;
+    private int[] neighbours; // claimed positions within NEIGHBOUR_RADIUS of each position
+    private int[] windowStarts; // every line a player could win with, as a first position and a step
+    private int[] windowSteps;
+    private int[] lineScores;
+    private BoardSymmetry symmetry; // null on boards too large to canonicalize, which are keyed by Zobrist hash
+    private int keyTransform; // transform from the board to the table's frame, set by keyFor
+
+    private long deadline;
+    private boolean outOfTime;
+    private long nodes;
+    private int completedDepth;
+    private int rootScore;
+
+    /**
+     * @param timeBudgetMillis how long to think about each move
+     */
+    public AlphaBetaStrategy(long timeBudgetMillis) {
+        this(timeBudgetMillis, DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * @param timeBudgetMillis how long to think about each move
+     * @param tableBits transposition table holds 2^tableBits entries, of 16 bytes each
+     */
+    public AlphaBetaStrategy(long timeBudgetMillis, int tableBits) {
+        timeBudgetNanos = timeBudgetMillis * 1000000L;
+        tableMask = (1 << tableBits) - 1;
+        tableKeys = new long[1 << tableBits];
+        tableScores = new int[1 << tableBits];
+        tableData = new int[1 << tableBits];
+    }
+
+    /**
+     * @return depth of the last fully completed search iteration
+     */
+    public int getLastSearchDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * @return number of positions visited while choosing the last move
+     */
+    public long getLastNodeCount() {
+        return nodes;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        if (board.isComplete()) return -1;
+        prepare(board);
+
+        deadline = System.nanoTime() + timeBudgetNanos;
+        outOfTime = false;
+        nodes = 0;
+        completedDepth = 0;
+
+        int bestMove = -1;
+        int remaining = size - board.getMoveCount();
+        for (int depth = 1; depth <= remaining; ++depth) {
+            int move = searchRoot(board, depth);
+            if (move >= 0) bestMove = move;
+            if (outOfTime) break;
+            completedDepth = depth;
+            if (rootScore >= WIN_THRESHOLD || rootScore <= -WIN_THRESHOLD) break; // result is forced
+        }
+        return bestMove >= 0 ? bestMove : moveLists[0][0];
+    }
+
+    // searches every root move, returning the best one whose search finished before time ran out
+    private int searchRoot(Board board, int depth) {
+        long key = keyFor(board);
+        int transform = keyTransform;
+        int count = generateMoves(board, 0, probeMove(key, transform));
+        int alpha = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < count; ++i) {
+            int move = nextMove(0, i, count);
+            makeMove(board, move);
+            int score = -negamax(board, depth - 1, 1, -INFINITY, -alpha);
+            unmakeMove(board, move);
+            if (outOfTime) break;
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+            }
+        }
+        if (!outOfTime) store(key, transform, alpha, depth, bestMove, BOUND_EXACT, 0);
+        rootScore = alpha;
+        return bestMove;
+    }
+
+    private int negamax(Board board, int depth, int ply, int alpha, int beta) {
+        if (board.getWinner() != Board.EMPTY) return ply - WIN_SCORE; // the player who just moved has won
+        if (board.getMoveCount() == size) return 0;
+        if ((++nodes & 0x3FF) == 0 && System.nanoTime() > deadline) outOfTime = true;
+        if (outOfTime) return 0;
+        if (depth == 0) return evaluate(board);
+
+        long key = keyFor(board);
+        int transform = keyTransform;
+        int slot = slotFor(key);
+        int tableMove = -1;
+        if (tableKeys[slot] == key) {
+            int data = tableData[slot];
+            tableMove = untransform(transform, (data & 0xFFFF) - 1);
+            if (((data >>> 16) & MAX_TABLE_DEPTH) >= depth) {
+                int score = fromTable(tableScores[slot], ply);
+                int bound = data >>> 24;
+                if (bound == BOUND_EXACT ||
+                        (bound == BOUND_LOWER && score >= beta) ||
+                        (bound == BOUND_UPPER && score <= alpha)) return score;
+            }
+        }
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        int count = generateMoves(board, ply, tableMove);
+        for (int i = 0; i < count; ++i) {
+            int move = nextMove(ply, i, count);
+            makeMove(board, move);
+            int score = -negamax(board, depth - 1, ply + 1, -beta, -alpha);
+            unmakeMove(board, move);
+            if (outOfTime) return 0;
+
+            if (score > best) {
+                best = score;
+                bestMove = move;
+            }
+            if (score > alpha) alpha = score;
+            if (alpha >= beta) {
+                addHistory(move, depth);
+                break;
+            }
+        }
+
+        int bound = best <= originalAlpha ? BOUND_UPPER : (best >= beta ? BOUND_LOWER : BOUND_EXACT);
+        store(key, transform, best, depth, bestMove, bound, ply);
+        return best;
+    }
+
+    // scores open lines for the player to move, positive if they look better placed than their opponent
+    private int evaluate(Board board) {
+        int score = 0;
+        int lineLength = config.inARow;
+        for (int w = 0; w < windowStarts.length; ++w) {
+            int position = windowStarts[w];
+            int step = windowSteps[w];
+            int player1 = 0;
+            int player2 = 0;
+            for (int i = 0; i < lineLength; ++i, position += step) {
+                int mark = board.getMark(position);
+                if (mark == Board.PLAYER_1) player1++;
+                else if (mark == Board.PLAYER_2) player2++;
+            }
+            if (player2 == 0) score += lineScores[player1];
+            else if (player1 == 0) score -= lineScores[player2];
+        }
+        score = Math.max(-WIN_THRESHOLD + 1, Math.min(WIN_THRESHOLD - 1, score));
+        return board.getCurrentPlayer() == Board.PLAYER_1 ? score : -score;
+    }
+
+    // fills the move list for this ply, scoring each move for ordering. returns the number of moves
+    private int generateMoves(Board board, int ply, int tableMove) {
+        if (moveLists[ply] == null) {
+            moveLists[ply] = new int[size];
+            moveScores[ply] = new int[size];
+        }
+        int[] moves = moveLists[ply];
+        int[] scores = moveScores[ply];
+        boolean nearbyOnly = size > FULL_WIDTH_SIZE && board.getMoveCount() > 0;
+        int count = 0;
+        for (int pass = 0; pass < 2 && count == 0; ++pass) {
+            for (int position = 0; position < size; ++position) {
+                if (board.getMark(position) != Board.EMPTY || (nearbyOnly && neighbours[position] == 0)) continue;
+                moves[count] = position;
+                scores[count] = position == tableMove ? Integer.MAX_VALUE : history[position] + centrality[position];
+                count++;
+            }
+            nearbyOnly = false; // nothing near claimed positions, so fall back to every empty one
+        }
+        return count;
+    }
+
+    // selection sort step: moves the best scoring remaining move to index and returns it
+    private int nextMove(int ply, int index, int count) {
+        int[] moves = moveLists[ply];
+        int[] scores = moveScores[ply];
+        int best = index;
+        for (int i = index + 1; i < count; ++i) {
+            if (scores[i] > scores[best]) best = i;
+        }
+        int move = moves[best];
+        moves[best] = moves[index];
+        moves[index] = move;
+        int score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+        return move;
+    }
+
+    private void makeMove(Board board, int position) {
+        board.play(position);
+        if (size > FULL_WIDTH_SIZE) updateNeighbours(position, 1);
+    }
+
+    private void unmakeMove(Board board, int position) {
+        board.undo();
+        if (size > FULL_WIDTH_SIZE) updateNeighbours(position, -1);
+    }
+
+    private void updateNeighbours(int position, int delta) {
+        int row = position / config.columns;
+        int column = position % config.columns;
+        for (int r = Math.max(0, row - NEIGHBOUR_RADIUS); r <= Math.min(config.rows - 1, row + NEIGHBOUR_RADIUS); ++r) {
+            for (int c = Math.max(0, column - NEIGHBOUR_RADIUS); c <= Math.min(config.columns - 1, column + NEIGHBOUR_RADIUS); ++c) {
+                neighbours[r * config.columns + c] += delta;
+            }
+        }
+    }
+
+    private void addHistory(int position, int depth) {
+        history[position] += depth * depth;
+        if (history[position] > (1 << 20)) {
+            for (int i = 0; i < size; ++i) history[i] >>= 1;
+        }
+    }
+
+    // table key for the board's position, also setting keyTransform for mapping moves into the table's frame
+    private long keyFor(Board board) {
+        if (symmetry == null) {
+            keyTransform = BoardSymmetry.IDENTITY;
+            return board.getHash();
+        }
+        keyTransform = symmetry.canonicalize(board, canonicalBits);
+        return BoardSymmetry.hash(canonicalBits[0], canonicalBits[1]);
+    }
+
+    private int untransform(int transform, int move) {
+        return move < 0 || symmetry == null ? move : symmetry.untransformPosition(transform, move);
+    }
+
+    private int slotFor(long key) {
+        return (int) (key ^ (key >>> 32)) & tableMask;
+    }
+
+    private int probeMove(long key, int transform) {
+        int slot = slotFor(key);
+        return tableKeys[slot] == key ? untransform(transform, (tableData[slot] & 0xFFFF) - 1) : -1;
+    }
+
+    // moves are stored in the canonical frame, so every symmetric copy of the position can use them
+    private void store(long key, int transform, int score, int depth, int move, int bound, int ply) {
+        if (move >= 0 && symmetry != null) move = symmetry.transformPosition(transform, move);
+        int slot = slotFor(key);
+        tableKeys[slot] = key;
+        tableScores[slot] = toTable(score, ply);
+        tableData[slot] = (move + 1) | (Math.min(depth, MAX_TABLE_DEPTH) << 16) | (bound << 24);
+    }
+
+    // win and loss scores are stored relative to the position they were found from, not the search root
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD) return score + ply;
+        if (score <= -WIN_THRESHOLD) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD) return score - ply;
+        if (score <= -WIN_THRESHOLD) return score + ply;
+        return score;
+    }
+
+    // sets up search state for the board's config, and neighbour counts for its current position
+    private void prepare(Board board) {
+        if (!board.getConfig().equals(config)) {
+            config = board.getConfig();
+            size = config.getSize();
+            moveLists = new int[size + 1][];
+            moveScores = new int[size + 1][];
+            history = new int[size];
+            neighbours = new int[size];
+            centrality = new int[size];
+            for (int position = 0; position < size; ++position) {
+                int row = position / config.columns;
+                int column = position % config.columns;
+                centrality[position] = config.rows + config.columns
+                        - Math.abs(2 * row - config.rows + 1) - Math.abs(2 * column - config.columns + 1);
+            }
+            buildWindows();
+            symmetry = size <= BoardSymmetry.MAX_BITBOARD_SIZE ? new BoardSymmetry(config) : null;
+            // previous results belong to another board size, and hashes aren't comparable between sizes
+            Arrays.fill(tableKeys, 0);
+        }
+        Arrays.fill(history, 0);
+        Arrays.fill(neighbours, 0);
+        if (size > FULL_WIDTH_SIZE) {
+            for (int i = 0; i < board.getMoveCount(); ++i) updateNeighbours(board.getMove(i), 1);
+        }
+    }
+
+    private void buildWindows() {
+        int[] rowSteps = {0, 1, 1, 1};
+        int[] columnSteps = {1, 0, 1, -1};
+        int lineLength = config.inARow;
+        int count = 0;
+        int[] starts = new int[rowSteps.length * size];
+        int[] steps = new int[starts.length];
+        for (int direction = 0; direction < rowSteps.length; ++direction) {
+            for (int position = 0; position < size; ++position) {
+                int row = position / config.columns;
+                int column = position % config.columns;
+                int endRow = row + (lineLength - 1) * rowSteps[direction];
+                int endColumn = column + (lineLength - 1) * columnSteps[direction];
+                if (endRow >= config.rows || endColumn < 0 || endColumn >= config.columns) continue;
+                starts[count] = position;
+                steps[count] = rowSteps[direction] * config.columns + columnSteps[direction];
+                count++;
+            }
+        }
+        windowStarts = Arrays.copyOf(starts, count);
+        windowSteps = Arrays.copyOf(steps, count);
+
+        lineScores = new int[lineLength + 1];
+        for (int n = 1; n <= lineLength; ++n) {
+            lineScores[n] = 3 * (n - 1) >= 12 ? MAX_LINE_SCORE : 1 << (3 * (n - 1));
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.gingerman.tictactoe.ai;
+
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Chooses moves with Monte Carlo Tree Search, for boards too large to search exhaustively.
+ *
+ * Search is root parallel: every thread grows its own UCT tree from the current position, playing random
+ * games out from its leaves, until the time budget runs out. After each playout a thread adds the result for
+ * the root move it went through to shared, lock-free counters, so the combined statistics are always
+ * current and the most visited move can be returned as soon as time is up.
+ *
+ * Trees are held in preallocated arrays per thread and playouts reuse per thread boards, so searching does
+ * not allocate. Instances are not thread safe, but the worker threads are shared between all instances.
+ */
+public class MonteCarloStrategy implements MoveStrategy {
+    public static final int DEFAULT_TREE_NODES = 1 << 16;
+
+    // rewards are counted in half points: 2 for a win, 1 for a draw, 0 for a loss
+    private static final int WIN_REWARD = 2;
+    private static final int DRAW_REWARD = 1;
+    private static final double EXPLORATION = 1.4;
+
+    private static ExecutorService sExecutor = null;
+
+    private final long timeBudgetNanos;
+    private final int threadCount;
+    private final Worker[] workers;
+
+    // per root move totals, summed over every thread's tree
+    private AtomicLongArray rootVisits = null;
+    private AtomicLongArray rootRewards = null;
+
+    private GameConfig config = null;
+    private Board rootBoard;
+    private volatile long deadline;
+    private long lastPlayouts = 0;
+    private double lastPlayoutsPerSecondPerCore = 0;
+
+    /**
+     * Search on every available core
+     * @param timeBudgetMillis how long to think about each move
+     */
+    public MonteCarloStrategy(long timeBudgetMillis) {
+        this(timeBudgetMillis, Runtime.getRuntime().availableProcessors(), DEFAULT_TREE_NODES);
+    }
+
+    /**
+     * @param timeBudgetMillis how long to think about each move
+     * @param threads number of threads to search with, at most the number of available cores
+     * @param treeNodes capacity of each thread's tree, of 20 bytes per node. Once full, leaves stop expanding.
+     */
+    public MonteCarloStrategy(long timeBudgetMillis, int threads, int treeNodes) {
+        timeBudgetNanos = timeBudgetMillis * 1000000L;
+        threadCount = Math.max(1, Math.min(threads, Runtime.getRuntime().availableProcessors()));
+        workers = new Worker[threadCount];
+        for (int i = 0; i < threadCount; ++i) workers[i] = new Worker(treeNodes, 0x2545F4914F6CDD1DL * (i + 1));
+    }
+
+    /**
+     * @return number of random games played while choosing the last move, over all threads
+     */
+    public long getLastPlayoutCount() {
+        return lastPlayouts;
+    }
+
+    /**
+     * @return playout throughput of the last search, per thread. Useful for sizing the time budget per device.
+     */
+    public double getPlayoutsPerSecondPerCore() {
+        return lastPlayoutsPerSecondPerCore;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        if (board.isComplete()) return -1;
+        prepare(board);
+
+        // a move that wins on the spot needs no search
+        for (int position = 0; position < board.getSize(); ++position) {
+            if (!board.play(position)) continue;
+            boolean won = board.getWinner() != Board.EMPTY;
+            board.undo();
+            if (won) return position;
+        }
+
+        long start = System.nanoTime();
+        deadline = start + timeBudgetNanos;
+        CountDownLatch finished = new CountDownLatch(threadCount);
+        for (Worker worker : workers) {
+            worker.finished = finished;
+            getExecutor().execute(worker);
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                finished.await();
+                break;
+            } catch (InterruptedException e) {
+                deadline = 0; // asked to stop, so have the workers wrap up and take what we have
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+
+        long playouts = 0;
+        for (Worker worker : workers) playouts += worker.playouts;
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        lastPlayouts = playouts;
+        lastPlayoutsPerSecondPerCore = playouts / seconds / threadCount;
+
+        // most visited is the move the search is most sure of, ties going to the better scoring move
+        int bestMove = -1;
+        long bestVisits = -1;
+        long bestRewards = -1;
+        for (int position = 0; position < board.getSize(); ++position) {
+            if (!board.isLegal(position)) continue;
+            long visits = rootVisits.get(position);
+            long rewards = rootRewards.get(position);
+            if (visits > bestVisits || (visits == bestVisits && rewards > bestRewards)) {
+                bestVisits = visits;
+                bestRewards = rewards;
+                bestMove = position;
+            }
+        }
+        return bestMove;
+    }
+
+    private void prepare(Board board) {
+        if (!board.getConfig().equals(config)) {
+            config = board.getConfig();
+            rootVisits = new AtomicLongArray(config.getSize());
+            rootRewards = new AtomicLongArray(config.getSize());
+            rootBoard = new Board(config);
+            for (Worker worker : workers) worker.prepare(config);
+        } else {
+            for (int i = 0; i < rootVisits.length(); ++i) {
+                rootVisits.set(i, 0);
+                rootRewards.set(i, 0);
+            }
+        }
+        rootBoard.copyFrom(board);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private int count = 0;
+
+                @Override
+                public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "MonteCarloWorker-" + (++count));
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    /**
+     * One search thread's tree, board and random number generator
+     */
+    private class Worker implements Runnable {
+        // tree nodes, each node's children allocated as a contiguous block
+        private final int[] nodeMoves;
+        private final int[] firstChild;
+        private final int[] childCounts;
+        private final int[] visits;
+        private final int[] rewards;
+        private int nodeCount;
+
+        private Board board;
+        private int[] path;
+        private int[] emptyPositions;
+        private long random;
+
+        CountDownLatch finished;
+        long playouts;
+
+        Worker(int capacity, long seed) {
+            nodeMoves = new int[capacity];
+            firstChild = new int[capacity];
+            childCounts = new int[capacity];
+            visits = new int[capacity];
+            rewards = new int[capacity];
+            random = seed;
+        }
+
+        void prepare(GameConfig gameConfig) {
+            board = new Board(gameConfig);
+            path = new int[gameConfig.getSize() + 1];
+            emptyPositions = new int[gameConfig.getSize()];
+        }
+
+        @Override
+        public void run() {
+            try {
+                playouts = 0;
+                nodeCount = 1;
+                childCounts[0] = 0;
+                visits[0] = 0;
+                int rootPlayer = rootBoard.getCurrentPlayer();
+                while (System.nanoTime() < deadline) {
+                    search(rootPlayer);
+                    playouts++;
+                }
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        // one iteration: select down the tree, expand a leaf, play a random game out, and record the result
+        private void search(int rootPlayer) {
+            board.copyFrom(rootBoard);
+            int node = 0;
+            int depth = 0;
+            path[depth++] = node;
+            while (childCounts[node] > 0 && !board.isComplete()) {
+                node = selectChild(node);
+                board.play(nodeMoves[node]);
+                path[depth++] = node;
+            }
+            if (!board.isComplete() && (visits[node] > 0 || node == 0) && expand(node)) {
+                node = firstChild[node] + nextInt(childCounts[node]);
+                board.play(nodeMoves[node]);
+                path[depth++] = node;
+            }
+
+            int winner = playout();
+            int opponent = rootPlayer == Board.PLAYER_1 ? Board.PLAYER_2 : Board.PLAYER_1;
+            int rootReward = winner == rootPlayer ? WIN_REWARD : (winner == Board.EMPTY ? DRAW_REWARD : 0);
+            int opponentReward = winner == opponent ? WIN_REWARD : (winner == Board.EMPTY ? DRAW_REWARD : 0);
+            visits[0]++;
+            for (int i = 1; i < depth; ++i) {
+                // nodes at odd depths were reached by a root player's move
+                visits[path[i]]++;
+                rewards[path[i]] += (i & 1) == 1 ? rootReward : opponentReward;
+            }
+            if (depth > 1) {
+                int move = nodeMoves[path[1]];
+                rootVisits.incrementAndGet(move);
+                rootRewards.addAndGet(move, rootReward);
+            }
+        }
+
+        // UCT: unvisited children first, then best average reward plus an exploration bonus
+        private int selectChild(int node) {
+            int first = firstChild[node];
+            int end = first + childCounts[node];
+            double logParent = Math.log(visits[node]);
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < end; ++child) {
+                int childVisits = visits[child];
+                if (childVisits == 0) return child;
+                double value = rewards[child] / (WIN_REWARD * (double) childVisits)
+                        + EXPLORATION * Math.sqrt(logParent / childVisits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        // adds a child for every legal move, in random order. returns false if the tree is full
+        private boolean expand(int node) {
+            int size = board.getSize();
+            int count = 0;
+            for (int position = 0; position < size; ++position) {
+                if (board.getMark(position) == Board.EMPTY) emptyPositions[count++] = position;
+            }
+            if (count == 0 || nodeCount + count > nodeMoves.length) return false;
+
+            int first = nodeCount;
+            for (int i = 0; i < count; ++i) {
+                int pick = i + nextInt(count - i);
+                int move = emptyPositions[pick];
+                emptyPositions[pick] = emptyPositions[i];
+                int child = first + i;
+                nodeMoves[child] = move;
+                childCounts[child] = 0;
+                visits[child] = 0;
+                rewards[child] = 0;
+            }
+            nodeCount += count;
+            firstChild[node] = first;
+            childCounts[node] = count;
+            return true;
+        }
+
+        // plays uniformly random moves until the game ends, returning the winner
+        private int playout() {
+            int size = board.getSize();
+            int count = 0;
+            for (int position = 0; position < size; ++position) {
+                if (board.getMark(position) == Board.EMPTY) emptyPositions[count++] = position;
+            }
+            while (!board.isComplete()) {
+                int pick = nextInt(count);
+                int move = emptyPositions[pick];
+                emptyPositions[pick] = emptyPositions[--count];
+                board.play(move);
+            }
+            return board.getWinner();
+        }
+
+        // xorshift64*, scaled to [0, bound)
+        private int nextInt(int bound) {
+            random ^= random >>> 12;
+            random ^= random << 25;
+            random ^= random >>> 27;
+            long bits = (random * 0x2545F4914F6CDD1DL) >>> 32;
+            return (int) ((bits * bound) >>> 32);
+        }
+    }
+}
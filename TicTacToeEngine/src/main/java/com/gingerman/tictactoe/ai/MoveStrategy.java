@@ -0,0 +1,15 @@
+package com.gingerman.tictactoe.ai;
+
+import com.gingerman.tictactoe.model.Board;
+
+/**
+ * A way of choosing moves for a computer player. Implementations may take a while to think, so callers
+ * should ask for moves off the ui thread.
+ */
+public interface MoveStrategy {
+    /**
+     * @param board position to move from. May be played on during the search, but is restored before returning.
+     * @return the position to claim for the board's current player, or -1 if the game is already complete
+     */
+    public int selectMove(Board board);
+}
@@ -0,0 +1,155 @@
+package com.gingerman.tictactoe.ai;
+
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.BoardSymmetry;
+import com.gingerman.tictactoe.model.GameConfig;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The solved game of standard tic tac toe: the best move and game theoretic value of every reachable position,
+ * looked up in constant time by the board's packed index.
+ *
+ * The table is generated offline by tools.PerfectPlayTableGenerator and shipped as a binary asset holding only
+ * the canonical form of each position under BoardSymmetry, 765 of the 5,478 reachable ones: a 4 byte magic
+ * number and a 4 byte entry count, then the canonical packed indices in ascending order as 2 byte keys, then one
+ * entry byte per key. Loading expands every entry to all its symmetric copies, so in memory there is one entry
+ * byte per packed index, holding the best move in the low 4 bits and the value for the player to move in the
+ * next 2. Unreachable positions have a value of VALUE_UNKNOWN.
+ */
+public class PerfectPlayTable implements MoveStrategy {
+    public static final String ASSET_NAME = "perfect3x3.bin";
+    public static final int MAGIC = 0x54545443; // "TTTC"
+
+    public static final int VALUE_UNKNOWN = 0;
+    public static final int VALUE_WIN = 1;
+    public static final int VALUE_DRAW = 2;
+    public static final int VALUE_LOSS = 3;
+
+    public static final int NO_MOVE = 0xF;
+    public static final int INDEX_COUNT = 19683; // 3^9 packed indices, one per arrangement of marks
+
+    private static final int SIZE = GameConfig.STANDARD.getSize();
+    private static final BoardSymmetry SYMMETRY = new BoardSymmetry(GameConfig.STANDARD);
+
+    private final byte[] entries; // packed entry per packed index
+
+    private PerfectPlayTable(byte[] tableEntries) {
+        entries = tableEntries;
+    }
+
+    /**
+     * @param input stream positioned at the start of the table, which is read fully but not closed
+     * @return the table
+     * @throws IOException if the stream can't be read or does not hold a table
+     */
+    public static PerfectPlayTable load(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(input);
+        if (data.readInt() != MAGIC) throw new IOException("not a perfect play table");
+        int count = data.readInt();
+        if (count < 0 || count > INDEX_COUNT) throw new IOException("bad perfect play table entry count " + count);
+        char[] keys = new char[count];
+        for (int i = 0; i < count; ++i) {
+            keys[i] = data.readChar();
+            if (keys[i] >= INDEX_COUNT) throw new IOException("bad perfect play table key " + (int) keys[i]);
+        }
+        byte[] canonicalEntries = new byte[count];
+        data.readFully(canonicalEntries);
+
+        // each symmetric copy of a position gets the canonical entry, with the move carried over by the same transform
+        byte[] entries = new byte[INDEX_COUNT];
+        long[] bits = new long[2];
+        for (int i = 0; i < count; ++i) {
+            unpack(keys[i], bits);
+            int move = canonicalEntries[i] & 0xF;
+            for (int transform = 0; transform < BoardSymmetry.TRANSFORM_COUNT; ++transform) {
+                if (!SYMMETRY.isValid(transform)) continue;
+                int index = packedIndex(SYMMETRY.transformBits(transform, bits[0]), SYMMETRY.transformBits(transform, bits[1]));
+                int copyMove = move == NO_MOVE ? NO_MOVE : SYMMETRY.transformPosition(transform, move);
+                entries[index] = (byte) ((canonicalEntries[i] & ~0xF) | copyMove);
+            }
+        }
+        return new PerfectPlayTable(entries);
+    }
+
+    /**
+     * @param firstBits positions claimed by PLAYER_1
+     * @param secondBits positions claimed by PLAYER_2
+     * @return the packed index of the position, as Board.getPackedIndex gives it
+     */
+    public static int packedIndex(long firstBits, long secondBits) {
+        int index = 0;
+        for (int position = SIZE - 1; position >= 0; --position) {
+            index = index * 3 + (int) ((firstBits >>> position) & 1) + 2 * (int) ((secondBits >>> position) & 1);
+        }
+        return index;
+    }
+
+    /**
+     * @param packedIndex packed index of any arrangement of marks
+     * @param bits scratch space for two bitboards, owned by the caller so repeated calls don't allocate
+     * @return the packed index of its canonical form under BoardSymmetry
+     */
+    public static int canonicalIndex(int packedIndex, long[] bits) {
+        unpack(packedIndex, bits);
+        SYMMETRY.canonicalize(bits[0], bits[1], bits);
+        return packedIndex(bits[0], bits[1]);
+    }
+
+    /**
+     * @param move best move, or NO_MOVE for finished games
+     * @param value value of the position for the player to move
+     * @return the packed entry
+     */
+    public static byte packEntry(int move, int value) {
+        return (byte) ((move & 0xF) | (value << 4));
+    }
+
+    /**
+     * @param board standard 3x3 board
+     * @return the best move for the player to move, or -1 if the game is over
+     */
+    public int getBestMove(Board board) {
+        int move = entryFor(board) & 0xF;
+        return move == NO_MOVE ? -1 : move;
+    }
+
+    /**
+     * @param board standard 3x3 board
+     * @return VALUE_WIN, VALUE_DRAW or VALUE_LOSS for the player to move, assuming perfect play from both sides
+     */
+    public int getValue(Board board) {
+        return (entryFor(board) >>> 4) & 0x3;
+    }
+
+    /**
+     * @param packedIndex packed index of any arrangement of marks, reachable or not
+     * @return VALUE_WIN, VALUE_DRAW or VALUE_LOSS for the player to move, or VALUE_UNKNOWN if unreachable
+     */
+    public int getValue(int packedIndex) {
+        return (entries[packedIndex] >>> 4) & 0x3;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        return getBestMove(board);
+    }
+
+    private int entryFor(Board board) {
+        if (!GameConfig.STANDARD.equals(board.getConfig()))
+            throw new IllegalArgumentException("perfect play table only covers standard 3x3 games");
+        return entries[(int) board.getPackedIndex()];
+    }
+
+    // the marks of a packed index, as PLAYER_1 then PLAYER_2 bits
+    private static void unpack(int packedIndex, long[] out) {
+        out[0] = 0;
+        out[1] = 0;
+        for (int position = 0; position < SIZE; ++position, packedIndex /= 3) {
+            int mark = packedIndex % 3;
+            if (mark != Board.EMPTY) out[mark - 1] |= 1L << position;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.gingerman.tictactoe.ai;
+
+import com.gingerman.tictactoe.model.Board;
+
+/**
+ * Chooses uniformly among the legal moves. The weakest opponent, and a baseline for measuring the others.
+ * Instances hold their random number generator and are not thread safe.
+ */
+public class RandomStrategy implements MoveStrategy {
+    private long random;
+    private int[] emptyPositions = new int[0];
+
+    /**
+     * @param seed random seed, so games can be replayed. Any value but 0.
+     */
+    public RandomStrategy(long seed) {
+        random = seed == 0 ? 0x2545F4914F6CDD1DL : seed;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        if (board.isComplete()) return -1;
+        int size = board.getSize();
+        if (emptyPositions.length < size) emptyPositions = new int[size];
+        int count = 0;
+        for (int position = 0; position < size; ++position) {
+            if (board.getMark(position) == Board.EMPTY) emptyPositions[count++] = position;
+        }
+        return emptyPositions[nextInt(count)];
+    }
+
+    // xorshift64*, scaled to [0, bound)
+    private int nextInt(int bound) {
+        random ^= random >>> 12;
+        random ^= random << 25;
+        random ^= random >>> 27;
+        long bits = (random * 0x2545F4914F6CDD1DL) >>> 32;
+        return (int) ((bits * bound) >>> 32);
+    }
+}
@@ -0,0 +1,126 @@
+package com.gingerman.tictactoe.ai;
+
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The solved game for a board of up to MAX_SIZE positions, generated offline by tools.TablebaseGenerator.
+ *
+ * The file is a 16 byte header of magic number, rows, columns and line length, then a 2 bit game theoretic
+ * value for the player to move per TablebaseIndex entry, four entries to a byte starting from the low bits.
+ * Values are the PerfectPlayTable ones, VALUE_UNKNOWN marking arrangements that can't arise in play.
+ *
+ * The file is memory mapped rather than read, so lookups go straight to the page cache and the table never
+ * takes up heap. Lookups only read the mapping, so one instance can be shared between threads.
+ */
+public class Tablebase implements MoveStrategy {
+    public static final int MAGIC = 0x54544232; // "TTB2"
+    public static final int HEADER_SIZE = 16;
+    public static final int MAX_SIZE = 20;
+
+    private final TablebaseIndex index;
+    private final ByteBuffer data;
+
+    private Tablebase(TablebaseIndex tablebaseIndex, ByteBuffer mappedData) {
+        index = tablebaseIndex;
+        data = mappedData;
+    }
+
+    /**
+     * @param config shape of the board
+     * @return the name tablebases for the config are stored under
+     */
+    public static String fileNameFor(GameConfig config) {
+        return String.format("tablebase%dx%dx%d.bin", config.rows, config.columns, config.inARow);
+    }
+
+    /**
+     * Maps a tablebase file into memory. The file is not read, and can be closed as soon as this returns.
+     * @param file tablebase file
+     * @return the tablebase
+     * @throws IOException if the file can't be mapped, or does not hold a tablebase
+     */
+    public static Tablebase open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.capacity() < HEADER_SIZE || mapped.getInt(0) != MAGIC)
+                throw new IOException("not a tablebase: " + file);
+
+            GameConfig config = GameConfig.valueOf(mapped.getInt(4), mapped.getInt(8), mapped.getInt(12));
+            if (config.getSize() > MAX_SIZE) throw new IOException("tablebase board is too large: " + config);
+            TablebaseIndex index = new TablebaseIndex(config);
+            if (mapped.capacity() != HEADER_SIZE + index.getEntryCount() / TablebaseIndex.ENTRIES_PER_BYTE)
+                throw new IOException("tablebase is truncated: " + file);
+            return new Tablebase(index, mapped);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("tablebase has an invalid config: " + file);
+        } finally {
+            input.close();
+        }
+    }
+
+    public GameConfig getConfig() {
+        return index.getConfig();
+    }
+
+    /**
+     * @param board board of this tablebase's config
+     * @return VALUE_WIN, VALUE_DRAW or VALUE_LOSS for the player to move, assuming perfect play from both sides
+     */
+    public int getValue(Board board) {
+        if (!index.getConfig().equals(board.getConfig()))
+            throw new IllegalArgumentException("tablebase is for " + index.getConfig() + " games");
+        return getValue(index.indexOf(board));
+    }
+
+    /**
+     * @param entry TablebaseIndex entry index
+     * @return the entry's value
+     */
+    public int getValue(long entry) {
+        int packed = data.get(HEADER_SIZE + (int) (entry / TablebaseIndex.ENTRIES_PER_BYTE));
+        return (packed >>> (2 * (int) (entry % TablebaseIndex.ENTRIES_PER_BYTE))) & 0x3;
+    }
+
+    /**
+     * @param board board of this tablebase's config, played on but restored before returning
+     * @return a move that keeps the best value for the player to move, winning moves first, or -1 if the game is over
+     */
+    public int getBestMove(Board board) {
+        if (board.isComplete()) return -1;
+        int bestMove = -1;
+        int bestRank = -1;
+        for (int position = 0; position < board.getSize() && bestRank < 3; ++position) {
+            if (!board.play(position)) continue;
+            // the value is the opponent's, so their loss is our win
+            int rank = board.getWinner() != Board.EMPTY ? 3 : rankFor(getValue(board));
+            board.undo();
+            if (rank > bestRank) {
+                bestRank = rank;
+                bestMove = position;
+            }
+        }
+        return bestMove;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        return getBestMove(board);
+    }
+
+    // how good the opponent's value is for us: 2 if they lose, 1 for a draw, 0 if they win
+    private static int rankFor(int opponentValue) {
+        if (opponentValue == PerfectPlayTable.VALUE_LOSS) return 2;
+        if (opponentValue == PerfectPlayTable.VALUE_DRAW) return 1;
+        return 0;
+    }
+}
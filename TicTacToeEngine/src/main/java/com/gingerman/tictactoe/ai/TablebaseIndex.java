@@ -0,0 +1,153 @@
+package com.gingerman.tictactoe.ai;
+
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+
+/**
+ * Perfect hash from positions to tablebase entries, shared by the generator and the runtime lookup.
+ *
+ * Positions are grouped into layers by number of claimed positions, so only arrangements with alternating
+ * counts are indexed. Within a layer of x PLAYER_1 and o PLAYER_2 positions, the rank is the PLAYER_1 positions'
+ * rank among all x-combinations of the board, times the number of o-combinations of what is left, plus the
+ * PLAYER_2 positions' rank among those, using the combinatorial number system. Each layer starts on a multiple
+ * of 4 entries, so layers of 2 bit entries can be written a whole byte at a time.
+ */
+public class TablebaseIndex {
+    public static final int ENTRIES_PER_BYTE = 4;
+
+    private final GameConfig config;
+    private final int size;
+    private final long[][] binomials; // binomials[n][k] is n choose k
+    private final long[] layerOffsets;
+    private final long entryCount;
+
+    /**
+     * @param gameConfig shape of the board, of up to 64 positions
+     */
+    public TablebaseIndex(GameConfig gameConfig) {
+        config = gameConfig;
+        size = gameConfig.getSize();
+        if (size > 64) throw new IllegalArgumentException("tablebases only index boards of up to 64 positions");
+
+        binomials = new long[size + 1][size + 1];
+        for (int n = 0; n <= size; ++n) {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= n; ++k) binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+        }
+
+        layerOffsets = new long[size + 2];
+        for (int layer = 0; layer <= size; ++layer) {
+            long end = layerOffsets[layer] + getLayerSize(layer);
+            layerOffsets[layer + 1] = (end + ENTRIES_PER_BYTE - 1) / ENTRIES_PER_BYTE * ENTRIES_PER_BYTE;
+        }
+        entryCount = layerOffsets[size + 1];
+    }
+
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return number of entries in the table, including padding between layers
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @param layer number of claimed positions
+     * @return index of the layer's first entry, always a multiple of ENTRIES_PER_BYTE
+     */
+    public long getLayerOffset(int layer) {
+        return layerOffsets[layer];
+    }
+
+    /**
+     * @param layer number of claimed positions
+     * @return number of arrangements of that many marks, with PLAYER_1 having moved first
+     */
+    public long getLayerSize(int layer) {
+        int first = (layer + 1) / 2;
+        return binomials[size][first] * binomials[size - first][layer / 2];
+    }
+
+    /**
+     * @param board board of this index's config
+     * @return the board position's entry index
+     */
+    public long indexOf(Board board) {
+        return indexOf(board.getBits(Board.PLAYER_1, 0), board.getBits(Board.PLAYER_2, 0));
+    }
+
+    /**
+     * @param firstBits positions claimed by PLAYER_1
+     * @param secondBits positions claimed by PLAYER_2, as many as or one fewer than PLAYER_1
+     * @return the position's entry index
+     */
+    public long indexOf(long firstBits, long secondBits) {
+        return layerOffsets[Long.bitCount(firstBits) + Long.bitCount(secondBits)] + rankInLayer(firstBits, secondBits);
+    }
+
+    /**
+     * @param firstBits positions claimed by PLAYER_1
+     * @param secondBits positions claimed by PLAYER_2, as many as or one fewer than PLAYER_1
+     * @return the position's index within its layer
+     */
+    public long rankInLayer(long firstBits, long secondBits) {
+        long firstRank = 0;
+        int ordinal = 0;
+        for (long bits = firstBits; bits != 0; bits &= bits - 1) {
+            firstRank += binomials[Long.numberOfTrailingZeros(bits)][++ordinal];
+        }
+
+        // PLAYER_2 positions are numbered among the positions PLAYER_1 left free
+        long secondRank = 0;
+        int free = 0;
+        int secondCount = 0;
+        for (int position = 0; position < size; ++position) {
+            long bit = 1L << position;
+            if ((firstBits & bit) != 0) continue;
+            if ((secondBits & bit) != 0) secondRank += binomials[free][++secondCount];
+            free++;
+        }
+        return firstRank * binomials[free][secondCount] + secondRank;
+    }
+
+    /**
+     * Inverse of rankInLayer
+     * @param layer number of claimed positions
+     * @param rank index within the layer
+     * @param out receives the PLAYER_1 and PLAYER_2 positions, in that order
+     */
+    public void unrank(int layer, long rank, long[] out) {
+        int firstCount = (layer + 1) / 2;
+        int secondCount = layer / 2;
+        long secondCombinations = binomials[size - firstCount][secondCount];
+        long firstBits = unrankCombination(rank / secondCombinations, firstCount, size);
+        long freeBits = unrankCombination(rank % secondCombinations, secondCount, size - firstCount);
+
+        // spread the PLAYER_2 combination back over the positions PLAYER_1 left free
+        long secondBits = 0;
+        int free = 0;
+        for (int position = 0; position < size && freeBits >>> free != 0; ++position) {
+            if ((firstBits & (1L << position)) != 0) continue;
+            if ((freeBits & (1L << free)) != 0) secondBits |= 1L << position;
+            free++;
+        }
+        out[0] = firstBits;
+        out[1] = secondBits;
+    }
+
+    // the combination of count elements of 0..n-1 with the given rank in the combinatorial number system
+    private long unrankCombination(long rank, int count, int n) {
+        long bits = 0;
+        int candidate = n - 1;
+        for (int ordinal = count; ordinal > 0; --ordinal) {
+            while (binomials[candidate][ordinal] > rank) candidate--;
+            bits |= 1L << candidate;
+            rank -= binomials[candidate][ordinal];
+            candidate--;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,109 @@
+package com.gingerman.tictactoe.data;
+
+import com.gingerman.tictactoe.model.GameConfig;
+import com.gingerman.tictactoe.model.MoveCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A completed game as stored in the game table: its players, outcome and timestamps, and its moves packed
+ * into a single value by MoveCodec, so a game costs one small row rather than a row per move.
+ */
+public class GameRecord {
+    public interface DB_FIELDS {
+        public static final String tableName = "game";
+        public static final String id = "id";
+        public static final String player1 = "player1";
+        public static final String player2 = "player2";
+        public static final String winner = "winner"; // Board.PLAYER_1, Board.PLAYER_2, or Board.EMPTY for a draw
+        public static final String config = "config"; // GameConfig.getPackedValue
+        public static final String startedAt = "started_at";
+        public static final String finishedAt = "finished_at";
+        public static final String moves = "moves"; // MoveCodec.pack if the board allows, otherwise MoveCodec.encode
+    }
+
+    public final int player1Id;
+    public final int player2Id;
+    public final int winner;
+    public final GameConfig config;
+    public final long startedAt;
+    public final long finishedAt;
+    public final int[] moves;
+    public final double ratingChange; // to player 1's rating, which player 2's is the negation of
+
+    public GameRecord(int player1, int player2, int gameWinner, GameConfig gameConfig, long started, long finished,
+                      int[] gameMoves, double rating) {
+        player1Id = player1;
+        player2Id = player2;
+        winner = gameWinner;
+        config = gameConfig;
+        startedAt = started;
+        finishedAt = finished;
+        moves = gameMoves;
+        ratingChange = rating;
+    }
+
+    /**
+     * @return the changes the game makes to both players' records
+     */
+    public List<ResultDelta> getDeltas() {
+        return ResultDelta.forGame(player1Id, player2Id, winner, ratingChange);
+    }
+
+    /**
+     * @return true if the moves are stored as a packed integer, false if as a varint blob
+     */
+    public boolean isPacked() {
+        return MoveCodec.canPack(config);
+    }
+
+    /**
+     * @return the moves packed into a long, if isPacked
+     */
+    public long getPackedMoves() {
+        return MoveCodec.pack(moves, moves.length);
+    }
+
+    /**
+     * @return the moves encoded as varints, if not isPacked
+     */
+    public byte[] getEncodedMoves() {
+        return MoveCodec.encode(moves, moves.length);
+    }
+
+    /**
+     * Writes the record, including its rating change, for the result journal
+     * @param out destination
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(player1Id);
+        out.writeInt(player2Id);
+        out.writeByte(winner);
+        out.writeInt(config.getPackedValue());
+        out.writeLong(startedAt);
+        out.writeLong(finishedAt);
+        out.writeDouble(ratingChange);
+        out.writeShort(moves.length);
+        for (int move : moves) out.writeShort(move);
+    }
+
+    /**
+     * @param in source, positioned at a record from writeTo
+     * @return the record
+     */
+    public static GameRecord readFrom(DataInput in) throws IOException {
+        int player1 = in.readInt();
+        int player2 = in.readInt();
+        int winner = in.readByte();
+        GameConfig config = GameConfig.valueOf(in.readInt());
+        long started = in.readLong();
+        long finished = in.readLong();
+        double rating = in.readDouble();
+        int[] moves = new int[in.readUnsignedShort()];
+        for (int i = 0; i < moves.length; ++i) moves[i] = in.readUnsignedShort();
+        return new GameRecord(player1, player2, winner, config, started, finished, moves, rating);
+    }
+}
@@ -0,0 +1,134 @@
+package com.gingerman.tictactoe.data;
+
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.Player;
+import com.gingerman.tictactoe.rating.EloRating;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps players in memory only, for headless simulations and load tests, so storage never holds back the game.
+ *
+ * Lock free: players are found in concurrent maps, and their records are atomic counters, so games between
+ * different players never contend, and games sharing a player only retry a compare and set. Reads of a player
+ * see each counter as of some moment during the read, not necessarily all as of the same one.
+ */
+public class MemoryPlayerStore implements PlayerStore {
+    private final ConcurrentMap<Integer, Entry> mById = new ConcurrentHashMap<Integer, Entry>();
+    private final ConcurrentMap<String, Entry> mByName = new ConcurrentHashMap<String, Entry>();
+    private final AtomicInteger mNextId = new AtomicInteger(1);
+
+    private static final Comparator<Player> BY_ID = new Comparator<Player>() {
+        @Override
+        public int compare(Player player1, Player player2) {
+            return player1.id < player2.id ? -1 : player1.id == player2.id ? 0 : 1;
+        }
+    };
+
+    // one player's record
+    private static class Entry {
+        final int id;
+        final String name;
+        final AtomicInteger wins = new AtomicInteger();
+        final AtomicInteger losses = new AtomicInteger();
+        final AtomicInteger draws = new AtomicInteger();
+        final AtomicLong rating = new AtomicLong(Double.doubleToLongBits(EloRating.INITIAL_RATING)); // double bits
+
+        Entry(int entryId, String entryName) {
+            id = entryId;
+            name = entryName;
+        }
+
+        void addRating(double change) {
+            while (true) {
+                long bits = rating.get();
+                if (rating.compareAndSet(bits, Double.doubleToLongBits(Double.longBitsToDouble(bits) + change))) return;
+            }
+        }
+
+        Player toPlayer() {
+            Player player = new Player(id, name);
+            player.wins = wins.get();
+            player.losses = losses.get();
+            player.draws = draws.get();
+            player.rating = Double.longBitsToDouble(rating.get());
+            return player;
+        }
+    }
+
+    @Override
+    public void open() {
+        // nothing to load
+    }
+
+    @Override
+    public void close() {
+        // nothing to write
+    }
+
+    /**
+     * @return a copy of every player and their record, in the order they were created
+     */
+    @Override
+    public List<Player> fetchAllPlayers() {
+        List<Player> players = new ArrayList<Player>(mById.size());
+        for (Entry entry : mById.values()) players.add(entry.toPlayer());
+        Collections.sort(players, BY_ID);
+        return players;
+    }
+
+    @Override
+    public List<Player> fetchLeaderboard(Ranking ranking, int offset, int count) {
+        return ranking.page(fetchAllPlayers(), offset, count);
+    }
+
+    @Override
+    public Player findPlayer(String name) {
+        Entry entry = mByName.get(name);
+        return entry != null ? entry.toPlayer() : null;
+    }
+
+    @Override
+    public Player createPlayer(String name) {
+        // by id first, so a player found by name can always have games recorded
+        Entry entry = new Entry(mNextId.getAndIncrement(), name);
+        mById.put(entry.id, entry);
+        if (mByName.putIfAbsent(name, entry) != null) {
+            mById.remove(entry.id); // the name is taken, and the id goes unused
+            return null;
+        }
+        return entry.toPlayer();
+    }
+
+    @Override
+    public void recordGame(GameRecord game) {
+        Entry player1 = mById.get(game.player1Id);
+        Entry player2 = mById.get(game.player2Id);
+        if (player1 == null || player2 == null) return; // not one of ours
+
+        if (game.winner == Board.PLAYER_1) {
+            player1.wins.incrementAndGet();
+            player2.losses.incrementAndGet();
+        } else if (game.winner == Board.PLAYER_2) {
+            player1.losses.incrementAndGet();
+            player2.wins.incrementAndGet();
+        } else {
+            player1.draws.incrementAndGet();
+            player2.draws.incrementAndGet();
+        }
+        player1.addRating(game.ratingChange);
+        player2.addRating(-game.ratingChange);
+    }
+
+    @Override
+    public void flush() {
+        // games are applied as they are recorded
+    }
+}
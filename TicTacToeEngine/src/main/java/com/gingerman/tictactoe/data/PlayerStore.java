@@ -0,0 +1,65 @@
+package com.gingerman.tictactoe.data;
+
+import com.gingerman.tictactoe.model.Player;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where players and their records are kept. ApplicationManager only talks to its store through this, so the
+ * game runs the same on any implementation: SqlitePlayerStore on devices, GameLog for high volume play, and
+ * MemoryPlayerStore for headless simulations and load tests. Kept in the engine with the types it stores, so
+ * stores that don't need the device run on any JVM.
+ *
+ * Implementations must be safe to call from any thread once open.
+ */
+public interface PlayerStore {
+    /**
+     * Makes the store ready to use, catching up on anything left unfinished when the process last died.
+     * Must be called before any other method, on a background thread.
+     */
+    public void open() throws IOException;
+
+    /**
+     * Writes anything still pending and releases the store. Nothing may be called after.
+     */
+    public void close();
+
+    /**
+     * @return a copy of every player and their record
+     */
+    public List<Player> fetchAllPlayers();
+
+    /**
+     * A page of the leaderboard, including every game recorded so far
+     * @param ranking order to list players in, best first
+     * @param offset number of better ranked players to skip
+     * @param count most players to return
+     * @return copies of the players ranked offset + 1 onwards, best first
+     */
+    public List<Player> fetchLeaderboard(Ranking ranking, int offset, int count);
+
+    /**
+     * @param name name of the player to find
+     * @return a copy of the player, or null if there is none by that name
+     */
+    public Player findPlayer(String name);
+
+    /**
+     * @param name name of the player to create (record will be empty)
+     * @return the new player, or null if the name is taken or can't be stored
+     */
+    public Player createPlayer(String name);
+
+    /**
+     * Adds a completed game to its players' records. May return before the game is written, as long as a
+     * later flush waits for it.
+     * @param game record of the game, including the change to its players' ratings
+     */
+    public void recordGame(GameRecord game);
+
+    /**
+     * Returns once every game recorded so far is written, and included in what the store reads back
+     */
+    public void flush();
+}
@@ -0,0 +1,112 @@
+package com.gingerman.tictactoe.data;
+
+import com.gingerman.tictactoe.model.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An order to rank players in, by two columns of the player table and then by id, highest first.
+ *
+ * Each ranking has an index on its two columns, which SQLite orders by id after them, so the leaderboard is
+ * read straight from the index: the top K players cost K rows, and a player's rank a count over the index
+ * entries ahead of it, rather than a sort. Players held in memory are ranked in the same order by compare.
+ */
+public class Ranking implements Comparator<Player> {
+    public static final Ranking WINS = new Ranking("wins", Player.DB_FIELDS.wins, Player.DB_FIELDS.winRate);
+    public static final Ranking WIN_RATE = new Ranking("win_rate", Player.DB_FIELDS.winRate, Player.DB_FIELDS.played);
+    public static final Ranking PLAYED = new Ranking("played", Player.DB_FIELDS.played, Player.DB_FIELDS.wins);
+    public static final Ranking RATING = new Ranking("rating", Player.DB_FIELDS.rating, Player.DB_FIELDS.played);
+
+    public static final Ranking[] ALL = new Ranking[]{WINS, WIN_RATE, PLAYED, RATING};
+
+    public final String name;
+    final String primaryColumn;
+    final String secondaryColumn;
+
+    private Ranking(String rankingName, String primary, String secondary) {
+        name = rankingName;
+        primaryColumn = primary;
+        secondaryColumn = secondary;
+    }
+
+    /**
+     * @return name of the index backing this ranking
+     */
+    String getIndexName() {
+        return Player.DB_FIELDS.tableName + "_by_" + name;
+    }
+
+    /**
+     * @return sql creating the index backing this ranking
+     */
+    String getCreateIndexSql() {
+        return String.format("CREATE INDEX %s ON %s (%s, %s);", getIndexName(), Player.DB_FIELDS.tableName,
+                primaryColumn, secondaryColumn);
+    }
+
+    /**
+     * @return ORDER BY clause, best first, matching the index read backwards
+     */
+    String getOrderBy() {
+        return String.format("%s DESC, %s DESC, %s DESC", primaryColumn, secondaryColumn, Player.DB_FIELDS.id);
+    }
+
+    /**
+     * Counts the players ahead of the one with the bound id as three ranges of the index, each of which SQLite
+     * can count by seeking, where a single OR of them would make it scan
+     * @return sql selecting the rank, from 1, of the player with id bound as the only argument
+     */
+    String getRankSql() {
+        String table = Player.DB_FIELDS.tableName;
+        String id = Player.DB_FIELDS.id;
+        return String.format("SELECT 1"
+                        + " + (SELECT COUNT(*) FROM %1$s WHERE %2$s > p.%2$s)"
+                        + " + (SELECT COUNT(*) FROM %1$s WHERE %2$s = p.%2$s AND %3$s > p.%3$s)"
+                        + " + (SELECT COUNT(*) FROM %1$s WHERE %2$s = p.%2$s AND %3$s = p.%3$s AND %4$s > p.%4$s)"
+                        + " FROM %1$s p WHERE p.%4$s = ?",
+                table, primaryColumn, secondaryColumn, id);
+    }
+
+    /**
+     * Orders players as getOrderBy does, best first
+     */
+    @Override
+    public int compare(Player player1, Player player2) {
+        int order = Double.compare(getValue(player2, primaryColumn), getValue(player1, primaryColumn));
+        if (order == 0) order = Double.compare(getValue(player2, secondaryColumn), getValue(player1, secondaryColumn));
+        if (order == 0) order = player2.id < player1.id ? -1 : player2.id == player1.id ? 0 : 1;
+        return order;
+    }
+
+    /**
+     * A page of the leaderboard, for stores that rank players held in memory
+     * @param players players to rank, which are left as they are
+     * @param offset number of better ranked players to skip
+     * @param count most players to return
+     * @return the players ranked offset + 1 onwards, best first
+     */
+    public List<Player> page(List<Player> players, int offset, int count) {
+        List<Player> ranked = new ArrayList<Player>(players);
+        Collections.sort(ranked, this);
+        int from = Math.min(offset, ranked.size());
+        return new ArrayList<Player>(ranked.subList(from, Math.min(from + count, ranked.size())));
+    }
+
+    // a player's value of a ranking column, computed as the database maintains it
+    private static double getValue(Player player, String column) {
+        int played = player.wins + player.losses + player.draws;
+        if (column.equals(Player.DB_FIELDS.wins)) return player.wins;
+        if (column.equals(Player.DB_FIELDS.played)) return played;
+        if (column.equals(Player.DB_FIELDS.winRate)) return player.wins * 1.0 / Math.max(played, 1);
+        if (column.equals(Player.DB_FIELDS.rating)) return player.rating;
+        throw new IllegalArgumentException("not a ranking column: " + column);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,57 @@
+package com.gingerman.tictactoe.data;
+
+import com.gingerman.tictactoe.model.Board;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Change to one player's record from one or more game results, applied to the database as an increment so
+ * results recorded at the same time can't overwrite each other
+ */
+public class ResultDelta {
+    public final int playerId;
+    public int wins;
+    public int losses;
+    public int draws;
+    public double rating; // change to the player's rating
+
+    public ResultDelta(int id) {
+        playerId = id;
+    }
+
+    /**
+     * @param player1Id id of the player who moved first
+     * @param player2Id id of their opponent
+     * @param winner Board.PLAYER_1, Board.PLAYER_2, or Board.EMPTY for a draw
+     * @param ratingChange change to player 1's rating, which player 2's is the negation of
+     * @return the changes to both players' records
+     */
+    public static List<ResultDelta> forGame(int player1Id, int player2Id, int winner, double ratingChange) {
+        ResultDelta player1 = new ResultDelta(player1Id);
+        ResultDelta player2 = new ResultDelta(player2Id);
+        player1.rating = ratingChange;
+        player2.rating = -ratingChange;
+        if (winner == Board.PLAYER_1) {
+            player1.wins = 1;
+            player2.losses = 1;
+        } else if (winner == Board.PLAYER_2) {
+            player1.losses = 1;
+            player2.wins = 1;
+        } else {
+            player1.draws = 1;
+            player2.draws = 1;
+        }
+        return Arrays.asList(player1, player2);
+    }
+
+    /**
+     * @param other change to fold into this one, for the same player
+     */
+    public void add(ResultDelta other) {
+        wins += other.wins;
+        losses += other.losses;
+        draws += other.draws;
+        rating += other.rating;
+    }
+}
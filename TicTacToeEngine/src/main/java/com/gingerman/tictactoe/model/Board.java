@@ -0,0 +1,320 @@
+package com.gingerman.tictactoe.model;
+
+/**
+ * Rules engine for a game on a rows x columns board, won by the first player to claim inARow positions
+ * in a horizontal, vertical or diagonal line. Positions are numbered row by row from the top left.
+ *
+ * The board is stored as one bit set per player, and only lines through the last claimed position are
+ * checked for a win, so a move costs O(inARow) regardless of board size. Moves can be undone, which lets
+ * search code walk the game tree on a single instance without allocating, and a Zobrist hash of the
+ * position is kept up to date for use as a transposition table key.
+ */
+public class Board {
+    public static final int EMPTY = 0;
+    public static final int PLAYER_1 = 1;
+    public static final int PLAYER_2 = 2;
+
+    // largest board whose packed index fits in a long
+    public static final int MAX_INDEXED_SIZE = 39;
+
+    // line directions as row and column steps: horizontal, vertical, diagonal and anti-diagonal
+    private static final int[] DIRECTION_ROWS = {0, 1, 1, 1};
+    private static final int[] DIRECTION_COLUMNS = {1, 0, 1, -1};
+
+    // random keys for hashing, one per position per player, shared by every board size
+    private static final long[] ZOBRIST_KEYS = new long[2 * GameConfig.MAX_DIMENSION * GameConfig.MAX_DIMENSION];
+    static {
+        // fixed seed splitmix64 sequence, so hashes are reproducible between runs
+        long seed = 0;
+        for (int i = 0; i < ZOBRIST_KEYS.length; ++i) {
+            seed += 0x9E3779B97F4A7C15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            ZOBRIST_KEYS[i] = z ^ (z >>> 31);
+        }
+    }
+
+    // POWERS_OF_3[n] is the packed index weight of position n
+    private static final long[] POWERS_OF_3 = new long[MAX_INDEXED_SIZE];
+    static {
+        POWERS_OF_3[0] = 1;
+        for (int i = 1; i < MAX_INDEXED_SIZE; ++i) POWERS_OF_3[i] = POWERS_OF_3[i - 1] * 3;
+    }
+
+    private final GameConfig config;
+    private final int rows;
+    private final int columns;
+    private final int inARow;
+    private final int size;
+
+    // bit n of word n / 64 is set if position n is claimed by that player
+    private final long[] player1Bits;
+    private final long[] player2Bits;
+    private final int[] moves; // claimed positions, in the order they were played
+    private int moveCount = 0;
+    private int winner = EMPTY;
+    private long hash = 0;
+    private long packedIndex = 0;
+
+    /**
+     * Construct an empty board
+     * @param gameConfig shape of the board, and the line length needed to win
+     */
+    public Board(GameConfig gameConfig) {
+        config = gameConfig;
+        rows = gameConfig.rows;
+        columns = gameConfig.columns;
+        inARow = gameConfig.inARow;
+        size = gameConfig.getSize();
+        player1Bits = new long[(size + 63) >>> 6];
+        player2Bits = new long[player1Bits.length];
+        moves = new int[size];
+    }
+
+    /**
+     * Construct a copy of another board, including its move history
+     * @param other board to copy
+     */
+    public Board(Board other) {
+        this(other.config);
+        copyFrom(other);
+    }
+
+    /**
+     * Overwrites this board's state with another's, without allocating
+     * @param other board to copy, must have the same config as this board
+     */
+    public void copyFrom(Board other) {
+        System.arraycopy(other.player1Bits, 0, player1Bits, 0, player1Bits.length);
+        System.arraycopy(other.player2Bits, 0, player2Bits, 0, player2Bits.length);
+        System.arraycopy(other.moves, 0, moves, 0, other.moveCount);
+        moveCount = other.moveCount;
+        winner = other.winner;
+        hash = other.hash;
+        packedIndex = other.packedIndex;
+    }
+
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return number of positions on the board
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return PLAYER_1 or PLAYER_2, whoever is to claim the next position
+     */
+    public int getCurrentPlayer() {
+        return (moveCount & 1) == 0 ? PLAYER_1 : PLAYER_2;
+    }
+
+    /**
+     * @return PLAYER_1 or PLAYER_2 if they have a line, otherwise EMPTY
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * @return Zobrist hash of the claimed positions, equal for equal positions on boards of the same config
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the position as a base 3 number, digit n being the mark at position n, so every arrangement of
+     * marks has its own index. Only available on boards of up to MAX_INDEXED_SIZE positions, otherwise -1.
+     */
+    public long getPackedIndex() {
+        return size <= MAX_INDEXED_SIZE ? packedIndex : -1;
+    }
+
+    /**
+     * @param player PLAYER_1 or PLAYER_2
+     * @param word index of the word to read, covering positions 64 * word to 64 * word + 63
+     * @return bit set of the positions in that word claimed by the player, bit n for position 64 * word + n
+     */
+    public long getBits(int player, int word) {
+        return player == PLAYER_1 ? player1Bits[word] : player2Bits[word];
+    }
+
+    /**
+     * @return true if a player has won, or there are no positions left to claim
+     */
+    public boolean isComplete() {
+        return winner != EMPTY || moveCount == size;
+    }
+
+    /**
+     * @param position position to be queried, must be on the board
+     * @return PLAYER_1 or PLAYER_2 if the position is claimed, otherwise EMPTY
+     */
+    public int getMark(int position) {
+        long bit = 1L << position;
+        int word = position >>> 6;
+        if ((player1Bits[word] & bit) != 0) return PLAYER_1;
+        if ((player2Bits[word] & bit) != 0) return PLAYER_2;
+        return EMPTY;
+    }
+
+    /**
+     * @param position position to be queried
+     * @return true if the position is on the board, unclaimed, and the game is still being played
+     */
+    public boolean isLegal(int position) {
+        if (position < 0 || position >= size || isComplete()) return false;
+        int word = position >>> 6;
+        return ((player1Bits[word] | player2Bits[word]) & (1L << position)) == 0;
+    }
+
+    /**
+     * @return number of positions claimed so far
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @param index move number, starting at 0
+     * @return the position claimed by that move
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * @return the most recently claimed position, or -1 if no moves have been played
+     */
+    public int getLastMove() {
+        return moveCount == 0 ? -1 : moves[moveCount - 1];
+    }
+
+    /**
+     * Claims a position for the current player
+     * @param position position to claim
+     * @return true if the move was legal and has been played
+     */
+    public boolean play(int position) {
+        if (!isLegal(position)) return false;
+
+        int player = getCurrentPlayer();
+        claim(position, player);
+        if (hasLineThrough(player == PLAYER_1 ? player1Bits : player2Bits, position)) winner = player;
+        return true;
+    }
+
+    /**
+     * Sets up an arbitrary arrangement of marks, as if the players had claimed their positions alternately,
+     * each in position order. Only for boards of up to 64 positions.
+     * @param firstBits positions claimed by PLAYER_1, bit n for position n
+     * @param secondBits positions claimed by PLAYER_2
+     * @return true if the arrangement could arise in play, with the winner set if the player who moved last
+     * has a line. Otherwise false, leaving the board empty: the marks overlap or are off the board, their counts
+     * don't alternate with PLAYER_1 first, or the player to move already has a line.
+     */
+    public boolean setPosition(long firstBits, long secondBits) {
+        reset();
+        if (size > 64) throw new IllegalStateException("only boards of up to 64 positions can be set directly");
+        long offBoard = size == 64 ? 0 : -1L << size;
+        int firstCount = Long.bitCount(firstBits);
+        int secondCount = Long.bitCount(secondBits);
+        if ((firstBits & secondBits) != 0 || ((firstBits | secondBits) & offBoard) != 0 ||
+                (firstCount != secondCount && firstCount != secondCount + 1)) return false;
+
+        long first = firstBits;
+        long second = secondBits;
+        while (first != 0) {
+            claim(Long.numberOfTrailingZeros(first), PLAYER_1);
+            first &= first - 1;
+            if (second == 0) break;
+            claim(Long.numberOfTrailingZeros(second), PLAYER_2);
+            second &= second - 1;
+        }
+
+        int lastPlayer = getCurrentPlayer() == PLAYER_1 ? PLAYER_2 : PLAYER_1;
+        for (int i = 0; i < moveCount; ++i) {
+            int position = moves[i];
+            long[] bits = (i & 1) == 0 ? player1Bits : player2Bits;
+            if (!hasLineThrough(bits, position)) continue;
+            if ((i & 1) == (lastPlayer == PLAYER_1 ? 0 : 1)) {
+                winner = lastPlayer;
+            } else {
+                reset();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes back the most recent move, if any
+     */
+    public void undo() {
+        if (moveCount == 0) return;
+        int position = moves[--moveCount];
+        int player = getCurrentPlayer();
+        long[] bits = player == PLAYER_1 ? player1Bits : player2Bits;
+        bits[position >>> 6] &= ~(1L << position);
+        hash ^= ZOBRIST_KEYS[2 * position + player - 1];
+        if (position < MAX_INDEXED_SIZE) packedIndex -= POWERS_OF_3[position] * player;
+        winner = EMPTY; // only the move just taken back could have ended the game
+    }
+
+    /**
+     * Clears the board, ready for a new game
+     */
+    public void reset() {
+        for (int i = 0; i < player1Bits.length; ++i) {
+            player1Bits[i] = 0;
+            player2Bits[i] = 0;
+        }
+        moveCount = 0;
+        winner = EMPTY;
+        hash = 0;
+        packedIndex = 0;
+    }
+
+    // marks position as claimed by player, without checking for a win
+    private void claim(int position, int player) {
+        long[] bits = player == PLAYER_1 ? player1Bits : player2Bits;
+        bits[position >>> 6] |= 1L << position;
+        moves[moveCount++] = position;
+        hash ^= ZOBRIST_KEYS[2 * position + player - 1];
+        if (position < MAX_INDEXED_SIZE) packedIndex += POWERS_OF_3[position] * player;
+    }
+
+    // checks the four lines through position for a run of inARow positions owned by the same player
+    private boolean hasLineThrough(long[] bits, int position) {
+        int row = position / columns;
+        int column = position - row * columns;
+        for (int direction = 0; direction < DIRECTION_ROWS.length; ++direction) {
+            int rowStep = DIRECTION_ROWS[direction];
+            int columnStep = DIRECTION_COLUMNS[direction];
+            int run = 1 + countRun(bits, row, column, rowStep, columnStep)
+                    + countRun(bits, row, column, -rowStep, -columnStep);
+            if (run >= inARow) return true;
+        }
+        return false;
+    }
+
+    // number of consecutive owned positions stepping away from (row, column), not counting the start
+    private int countRun(long[] bits, int row, int column, int rowStep, int columnStep) {
+        int count = 0;
+        int r = row + rowStep;
+        int c = column + columnStep;
+        while (count < inARow - 1 && r >= 0 && r < rows && c >= 0 && c < columns) {
+            int position = r * columns + c;
+            if ((bits[position >>> 6] & (1L << position)) == 0) break;
+            count++;
+            r += rowStep;
+            c += columnStep;
+        }
+        return count;
+    }
+}
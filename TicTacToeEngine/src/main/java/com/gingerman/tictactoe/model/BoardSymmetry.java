@@ -0,0 +1,199 @@
+package com.gingerman.tictactoe.model;
+
+/**
+ * Maps board positions onto a single canonical representative of their symmetry class, so caches and tables
+ * need to hold only one of the up to eight equivalent copies of each position.
+ *
+ * Transform t rotates the board by (t & 3) quarter turns clockwise, after mirroring it left to right if
+ * (t & 4) is set. Square boards have all eight; rectangular boards only the four that keep their shape.
+ * Positions are mapped through precomputed permutations, and bit sets of up to 64 positions a byte at a time
+ * through precomputed tables, so transforming a whole board costs a handful of lookups.
+ *
+ * Immutable once built, so one instance per config can be shared between threads.
+ */
+public class BoardSymmetry {
+    public static final int TRANSFORM_COUNT = 8;
+    public static final int IDENTITY = 0;
+
+    // largest board whose positions fit in the single long the bit set transforms work on
+    public static final int MAX_BITBOARD_SIZE = 64;
+
+    private final GameConfig config;
+    private final int size;
+    private final int[] transforms; // the transforms that keep the board's shape, identity first
+    private final int[][] positionMaps; // [transform][position] -> transformed position
+    private final int[][] inverseMaps; // [transform][transformed position] -> position
+    private final long[][] byteTables; // [transform][byte index * 256 + byte value] -> transformed bits
+    private final int byteCount;
+
+    /**
+     * @param gameConfig shape of the board
+     */
+    public BoardSymmetry(GameConfig gameConfig) {
+        config = gameConfig;
+        size = gameConfig.getSize();
+        boolean square = gameConfig.rows == gameConfig.columns;
+        transforms = new int[square ? TRANSFORM_COUNT : TRANSFORM_COUNT / 2];
+        int count = 0;
+        for (int transform = 0; transform < TRANSFORM_COUNT; ++transform) {
+            if (square || (transform & 1) == 0) transforms[count++] = transform;
+        }
+
+        positionMaps = new int[TRANSFORM_COUNT][];
+        inverseMaps = new int[TRANSFORM_COUNT][];
+        for (int transform : transforms) {
+            int[] map = new int[size];
+            int[] inverse = new int[size];
+            for (int position = 0; position < size; ++position) {
+                map[position] = mapPosition(transform, position);
+                inverse[map[position]] = position;
+            }
+            positionMaps[transform] = map;
+            inverseMaps[transform] = inverse;
+        }
+
+        byteCount = (size + 7) >>> 3;
+        byteTables = new long[TRANSFORM_COUNT][];
+        if (size <= MAX_BITBOARD_SIZE) {
+            for (int transform : transforms) {
+                long[] table = new long[byteCount << 8];
+                int[] map = positionMaps[transform];
+                for (int index = 0; index < byteCount; ++index) {
+                    for (int value = 0; value < 256; ++value) {
+                        long bits = 0;
+                        for (int bit = 0; bit < 8; ++bit) {
+                            int position = (index << 3) + bit;
+                            if ((value & (1 << bit)) != 0 && position < size) bits |= 1L << map[position];
+                        }
+                        table[(index << 8) | value] = bits;
+                    }
+                }
+                byteTables[transform] = table;
+            }
+        }
+    }
+
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @param transform transform to check
+     * @return true if the transform maps this board's shape onto itself
+     */
+    public boolean isValid(int transform) {
+        return transform >= 0 && transform < TRANSFORM_COUNT && positionMaps[transform] != null;
+    }
+
+    /**
+     * @param transform any transform
+     * @return the transform that undoes it
+     */
+    public static int inverse(int transform) {
+        // reflections are their own inverse, rotations are undone by turning the rest of the way round
+        return (transform & 4) != 0 ? transform : (4 - transform) & 3;
+    }
+
+    /**
+     * @param transform a valid transform for this board
+     * @param position position on the original board
+     * @return where the position ends up on the transformed board
+     */
+    public int transformPosition(int transform, int position) {
+        return positionMaps[transform][position];
+    }
+
+    /**
+     * @param transform a valid transform for this board
+     * @param position position on the transformed board, for instance a move found for a canonical position
+     * @return the matching position on the original board
+     */
+    public int untransformPosition(int transform, int position) {
+        return inverseMaps[transform][position];
+    }
+
+    /**
+     * @param transform a valid transform for this board
+     * @param bits set of positions, bit n for position n. Only for boards of up to MAX_BITBOARD_SIZE positions.
+     * @return the transformed set of positions
+     */
+    public long transformBits(int transform, long bits) {
+        long[] table = byteTables[transform];
+        long result = 0;
+        for (int index = 0; index < byteCount; ++index) {
+            result |= table[(index << 8) | (int) ((bits >>> (index << 3)) & 0xFF)];
+        }
+        return result;
+    }
+
+    /**
+     * Finds the canonical form of a position: of all its symmetric copies, the one whose first player bits,
+     * then second player bits, are smallest. Only for boards of up to MAX_BITBOARD_SIZE positions.
+     * @param firstBits positions claimed by PLAYER_1
+     * @param secondBits positions claimed by PLAYER_2
+     * @param out receives the canonical first and second player bits, in that order
+     * @return the transform that maps the position onto its canonical form
+     */
+    public int canonicalize(long firstBits, long secondBits, long[] out) {
+        if (size > MAX_BITBOARD_SIZE)
+            throw new IllegalStateException(String.format("can't canonicalize boards of more than %d positions", MAX_BITBOARD_SIZE));
+
+        // compared unsigned, by offsetting into signed range
+        long bestFirst = firstBits + Long.MIN_VALUE;
+        long bestSecond = secondBits + Long.MIN_VALUE;
+        int bestTransform = IDENTITY;
+        for (int i = 1; i < transforms.length; ++i) {
+            int transform = transforms[i];
+            long first = transformBits(transform, firstBits) + Long.MIN_VALUE;
+            if (first > bestFirst) continue;
+            long second = transformBits(transform, secondBits) + Long.MIN_VALUE;
+            if (first < bestFirst || second < bestSecond) {
+                bestFirst = first;
+                bestSecond = second;
+                bestTransform = transform;
+            }
+        }
+        out[0] = bestFirst - Long.MIN_VALUE;
+        out[1] = bestSecond - Long.MIN_VALUE;
+        return bestTransform;
+    }
+
+    /**
+     * @param board board of this symmetry's config
+     * @param out receives the canonical first and second player bits, in that order
+     * @return the transform that maps the board's position onto its canonical form
+     */
+    public int canonicalize(Board board, long[] out) {
+        return canonicalize(board.getBits(Board.PLAYER_1, 0), board.getBits(Board.PLAYER_2, 0), out);
+    }
+
+    /**
+     * @param firstBits canonical positions claimed by PLAYER_1
+     * @param secondBits canonical positions claimed by PLAYER_2
+     * @return a well mixed 64 bit key for the position, for use in hash tables
+     */
+    public static long hash(long firstBits, long secondBits) {
+        long z = firstBits * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(secondBits * 0xC2B2AE3D27D4EB4FL, 31);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private int mapPosition(int transform, int position) {
+        int rows = config.rows;
+        int columns = config.columns;
+        int row = position / columns;
+        int column = position % columns;
+        if ((transform & 4) != 0) column = columns - 1 - column;
+        for (int turn = 0; turn < (transform & 3); ++turn) {
+            // a quarter turn clockwise swaps the board's dimensions, which only keeps the shape of square boards
+            int turned = column;
+            column = rows - 1 - row;
+            row = turned;
+            int swap = rows;
+            rows = columns;
+            columns = swap;
+        }
+        return row * columns + column;
+    }
+}
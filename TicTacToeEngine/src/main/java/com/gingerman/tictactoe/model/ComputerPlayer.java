@@ -0,0 +1,22 @@
+package com.gingerman.tictactoe.model;
+
+import com.gingerman.tictactoe.ai.MoveStrategy;
+
+/**
+ * A Player whose moves are chosen by a MoveStrategy rather than by taps on the board.
+ * Shares its id, name and record with the database backed Player it plays as.
+ */
+public class ComputerPlayer extends Player {
+    public static final String DEFAULT_NAME = "Computer";
+
+    public final MoveStrategy strategy;
+
+    /**
+     * @param player database backed player to play as
+     * @param moveStrategy strategy used to choose this player's moves
+     */
+    public ComputerPlayer(Player player, MoveStrategy moveStrategy) {
+        super(player);
+        strategy = moveStrategy;
+    }
+}
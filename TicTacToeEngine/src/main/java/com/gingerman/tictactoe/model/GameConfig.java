@@ -0,0 +1,95 @@
+package com.gingerman.tictactoe.model;
+
+/**
+ * Describes the shape of a game: a board of rows x columns, won by claiming inARow positions in a line.
+ * Immutable, so a single instance can be shared between games.
+ */
+public class GameConfig {
+    public static final GameConfig STANDARD = new GameConfig(3, 3, 3);
+
+    /**
+     * Configurations offered when creating a game, standard tic tac toe first
+     */
+    public static final GameConfig[] PRESETS = {
+            STANDARD,
+            new GameConfig(4, 4, 4),
+            new GameConfig(5, 5, 4),
+            new GameConfig(7, 7, 5),
+            new GameConfig(15, 15, 5),
+            new GameConfig(19, 19, 5)
+    };
+
+    public static final int MAX_DIMENSION = 19;
+
+    public final int rows;
+    public final int columns;
+    public final int inARow;
+
+    /**
+     * @param boardRows number of rows on the board
+     * @param boardColumns number of columns on the board
+     * @param lineLength number of positions in a line needed to win
+     */
+    public GameConfig(int boardRows, int boardColumns, int lineLength) {
+        if (boardRows < 1 || boardColumns < 1 || boardRows > MAX_DIMENSION || boardColumns > MAX_DIMENSION)
+            throw new IllegalArgumentException(String.format("unsupported board size %dx%d", boardRows, boardColumns));
+        if (lineLength < 1 || lineLength > Math.max(boardRows, boardColumns))
+            throw new IllegalArgumentException(String.format("line length %d can't fit on a %dx%d board", lineLength, boardRows, boardColumns));
+        rows = boardRows;
+        columns = boardColumns;
+        inARow = lineLength;
+    }
+
+    /**
+     * @return number of positions on the board
+     */
+    public int getSize() {
+        return rows * columns;
+    }
+
+    /**
+     * @param boardRows number of rows on the board
+     * @param boardColumns number of columns on the board
+     * @param lineLength number of positions in a line needed to win
+     * @return the matching preset instance, or a new config if it is not a preset
+     */
+    public static GameConfig valueOf(int boardRows, int boardColumns, int lineLength) {
+        for (GameConfig preset : PRESETS) {
+            if (preset.rows == boardRows && preset.columns == boardColumns && preset.inARow == lineLength) return preset;
+        }
+        return new GameConfig(boardRows, boardColumns, lineLength);
+    }
+
+    /**
+     * @return rows, columns and line length packed into one int, a byte each, for storing compactly
+     */
+    public int getPackedValue() {
+        return rows << 16 | columns << 8 | inARow;
+    }
+
+    /**
+     * @param packed value from getPackedValue
+     * @return the config it was packed from
+     */
+    public static GameConfig valueOf(int packed) {
+        return valueOf(packed >>> 16 & 0xFF, packed >>> 8 & 0xFF, packed & 0xFF);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GameConfig)) return false;
+        GameConfig other = (GameConfig) o;
+        return rows == other.rows && columns == other.columns && inARow == other.inARow;
+    }
+
+    @Override
+    public int hashCode() {
+        return (rows * 31 + columns) * 31 + inARow;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx%d, %d in a row", columns, rows, inARow);
+    }
+}
@@ -0,0 +1,206 @@
+package com.gingerman.tictactoe.model;
+
+import com.gingerman.tictactoe.ai.MoveStrategy;
+import com.gingerman.tictactoe.data.GameRecord;
+
+/**
+ * A game being played between two players, without any way of showing it: whose turn it is, who won, and the
+ * players' records once the result is reported. Plain Java, so tools play games exactly as the app does, which
+ * adds the marks shown on the board in Game.
+ */
+public class Match {
+    public Player player1;
+    public Player player2;
+    public Player winner = null;
+    public Player current;
+    public long startedAt; // wall clock time in ms
+    public long finishedAt = 0; // wall clock time in ms, once complete
+
+    protected final Board board;
+    protected boolean resultReported = false;
+
+    /**
+     * Construct a new game with empty game state
+     * @param matchPlayer1 player 1 (x)
+     * @param matchPlayer2 player 2 (o)
+     * @param config board size and line length for this game
+     */
+    public Match(Player matchPlayer1, Player matchPlayer2, GameConfig config) {
+        this(matchPlayer1, matchPlayer2, config, System.currentTimeMillis(), new int[0], 0);
+    }
+
+    /**
+     * Construct a game part way through, as it is restored or resumed, replaying the moves made so far
+     * @param matchPlayer1 player 1 (x)
+     * @param matchPlayer2 player 2 (o)
+     * @param config board size and line length for this game
+     * @param startTime wall clock time in ms the game was started
+     * @param moves positions claimed so far, in order
+     * @param count number of moves
+     */
+    public Match(Player matchPlayer1, Player matchPlayer2, GameConfig config, long startTime, int[] moves, int count) {
+        board = new Board(config);
+        startedAt = startTime;
+        player1 = matchPlayer1;
+        player2 = matchPlayer2;
+
+        for (int i = 0; i < count; ++i) board.play(moves[i]);
+        if (board.getWinner() != Board.EMPTY) winner = board.getWinner() == Board.PLAYER_1 ? player1 : player2;
+        // the player to move, or once the game is over the one who moved last, as claim leaves it
+        int currentMark = board.isComplete() ? (count % 2 == 1 ? Board.PLAYER_1 : Board.PLAYER_2) : board.getCurrentPlayer();
+        current = currentMark == Board.PLAYER_1 ? player1 : player2;
+        if (board.isComplete()) finishedAt = System.currentTimeMillis(); // when it ended was not kept
+    }
+
+    /**
+     * Starts a new game on this match's board between the given players, without allocating, as tools playing
+     * many games reuse one Match
+     * @param matchPlayer1 player 1 (x)
+     * @param matchPlayer2 player 2 (o)
+     */
+    public void reset(Player matchPlayer1, Player matchPlayer2) {
+        reset(matchPlayer1, matchPlayer2, System.currentTimeMillis());
+    }
+
+    /**
+     * As above, with the start time given by the caller
+     * @param matchPlayer1 player 1 (x)
+     * @param matchPlayer2 player 2 (o)
+     * @param startTime wall clock time in ms the game was started
+     */
+    public void reset(Player matchPlayer1, Player matchPlayer2, long startTime) {
+        board.reset();
+        player1 = matchPlayer1;
+        player2 = matchPlayer2;
+        winner = null;
+        current = matchPlayer1;
+        startedAt = startTime;
+        finishedAt = 0;
+        resultReported = false;
+    }
+
+    /**
+     * @return the board size and line length this game is played with
+     */
+    public GameConfig getConfig() {
+        return board.getConfig();
+    }
+
+    /**
+     * @return true if a player has won, or the board is full
+     */
+    public boolean isComplete() {
+        return board.isComplete();
+    }
+
+    /**
+     * @return number of moves played so far
+     */
+    public int getMoveCount() {
+        return board.getMoveCount();
+    }
+
+    /**
+     * @param index number of the move, from 0
+     * @return the position claimed by that move
+     */
+    public int getMove(int index) {
+        return board.getMove(index);
+    }
+
+    /**
+     * @return every position claimed so far, in order
+     */
+    public int[] getMoves() {
+        int[] moves = new int[board.getMoveCount()];
+        for (int i = 0; i < moves.length; ++i) moves[i] = board.getMove(i);
+        return moves;
+    }
+
+    /**
+     * @return a copy of the current board, which callers such as computer players are free to modify
+     */
+    public Board copyBoard() {
+        return new Board(board);
+    }
+
+    /**
+     * Chooses a move for the current player on the board itself, rather than a copy, as strategies restore it
+     * @param strategy strategy to choose with
+     * @return the position chosen, or -1 if the game is complete
+     */
+    public int selectMove(MoveStrategy strategy) {
+        return strategy.selectMove(board);
+    }
+
+    /**
+     * Implements a move (claiming a location in the game map), passing the turn to the other player unless it
+     * ends the game
+     * @param position position that the current player wants to claim
+     * @return true if the move was legal, false if it was off the board, already claimed or the game is over
+     */
+    public boolean claim(int position) {
+        if (!board.play(position)) return false;
+
+        // is the game over, or shall we continue
+        if (board.isComplete()) {
+            finishedAt = System.currentTimeMillis();
+            if (board.getWinner() != Board.EMPTY) winner = current;
+        } else {
+            current = current == player1 ? player2 : player1; // new players turn
+        }
+        return true;
+    }
+
+    /**
+     * Swaps in other objects for the same two players, as when a game restored with only their ids and names is
+     * given their records. Whoever won or is to move carries over.
+     * @param matchPlayer1 player 1 (x)
+     * @param matchPlayer2 player 2 (o)
+     */
+    public void replacePlayers(Player matchPlayer1, Player matchPlayer2) {
+        if (winner != null) winner = winner == player1 ? matchPlayer1 : matchPlayer2;
+        current = current == player1 ? matchPlayer1 : matchPlayer2;
+        player1 = matchPlayer1;
+        player2 = matchPlayer2;
+    }
+
+    /**
+     * Credits the result to both players' records, once the game is complete
+     * @return true if the result was credited now, false if the game isn't complete or it already had been
+     */
+    public boolean reportResult() {
+        if (!board.isComplete() || resultReported) return false;
+        resultReported = true;
+
+        if (winner == player1) {
+            player1.wins++;
+            player2.losses++;
+        } else if (winner == player2) {
+            player1.losses++;
+            player2.wins++;
+        } else {
+            player1.draws++;
+            player2.draws++;
+        }
+        return true;
+    }
+
+    /**
+     * @return Board.PLAYER_1 or Board.PLAYER_2 for the winner, or Board.EMPTY for a draw, as rating expects
+     */
+    public int getWinnerMark() {
+        if (winner == player1) return Board.PLAYER_1;
+        if (winner == player2) return Board.PLAYER_2;
+        return Board.EMPTY;
+    }
+
+    /**
+     * @param ratingChange change to player 1's rating
+     * @return a record of the completed game, to store
+     */
+    public GameRecord createRecord(double ratingChange) {
+        return new GameRecord(player1.id, player2.id, getWinnerMark(), board.getConfig(), startedAt, finishedAt,
+                getMoves(), ratingChange);
+    }
+}
@@ -0,0 +1,96 @@
+package com.gingerman.tictactoe.model;
+
+/**
+ * Compact encodings of a game's moves, for storing whole games in a single value.
+ *
+ * Boards of up to MAX_PACKED_SIZE positions pack into a long at 4 bits per move, each move stored plus one so
+ * that a zero nibble ends the game: a 3x3 game fits in 36 bits. Larger boards are encoded as a stream of
+ * unsigned varints, 7 bits of position per byte, so a move costs one byte on boards of up to 128 positions
+ * and two on any larger board.
+ */
+public class MoveCodec {
+    public static final int MAX_PACKED_SIZE = 15;
+
+    private MoveCodec() {
+    }
+
+    /**
+     * @param config shape of the board
+     * @return true if games on the board pack into a long, false if they need a varint stream
+     */
+    public static boolean canPack(GameConfig config) {
+        return config.getSize() <= MAX_PACKED_SIZE;
+    }
+
+    /**
+     * @param moves positions claimed, in order, each less than MAX_PACKED_SIZE
+     * @param count number of moves
+     * @return the moves packed 4 bits each, first move lowest
+     */
+    public static long pack(int[] moves, int count) {
+        long packed = 0;
+        for (int i = count - 1; i >= 0; --i) packed = packed << 4 | (moves[i] + 1);
+        return packed;
+    }
+
+    /**
+     * @param packed moves from pack
+     * @param moves array to unpack into, with room for every move
+     * @return number of moves
+     */
+    public static int unpack(long packed, int[] moves) {
+        int count = 0;
+        for (; packed != 0; packed >>>= 4) moves[count++] = (int) (packed & 0xF) - 1;
+        return count;
+    }
+
+    /**
+     * @param moves positions claimed, in order
+     * @param count number of moves
+     * @return the moves as a varint stream
+     */
+    public static byte[] encode(int[] moves, int count) {
+        int length = 0;
+        for (int i = 0; i < count; ++i) length += varintLength(moves[i]);
+
+        byte[] encoded = new byte[length];
+        int offset = 0;
+        for (int i = 0; i < count; ++i) {
+            int move = moves[i];
+            while (move >= 0x80) {
+                encoded[offset++] = (byte) (move | 0x80);
+                move >>>= 7;
+            }
+            encoded[offset++] = (byte) move;
+        }
+        return encoded;
+    }
+
+    /**
+     * @param encoded moves from encode
+     * @param moves array to decode into, with room for every move
+     * @return number of moves
+     */
+    public static int decode(byte[] encoded, int[] moves) {
+        int count = 0;
+        int offset = 0;
+        while (offset < encoded.length) {
+            int move = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = encoded[offset++];
+                move |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            moves[count++] = move;
+        }
+        return count;
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) length++;
+        return length;
+    }
+}
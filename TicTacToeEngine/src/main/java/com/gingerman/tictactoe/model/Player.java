@@ -0,0 +1,45 @@
+package com.gingerman.tictactoe.model;
+
+import com.gingerman.tictactoe.rating.EloRating;
+
+/**
+ * Represents a Player in memory. Plain Java, so stores and tools can use it off the device: the app reads and
+ * writes players through its database, and games parcel them by id and name only.
+ */
+public class Player {
+    public int id;
+    public String name;
+    public int wins;
+    public int losses;
+    public int draws;
+    public double rating = EloRating.INITIAL_RATING;
+
+    public interface DB_FIELDS {
+        public static final String tableName = "player";
+        public static final String id = "id";
+        public static final String name = "name";
+        public static final String wins = "wins";
+        public static final String losses = "losses";
+        public static final String draws = "draws";
+        public static final String played = "played"; // wins + losses + draws, maintained for ranking
+        public static final String winRate = "win_rate"; // wins / played, maintained for ranking
+        public static final String rating = "rating";
+        public static final String baseRating = "base_rating"; // rating before the game history rerating replays
+    }
+
+    public Player(int playerId, String playerName) {
+        id = playerId;
+        name = playerName;
+    }
+
+    /**
+     * @param other player to copy, including its record
+     */
+    public Player(Player other) {
+        this(other.id, other.name);
+        wins = other.wins;
+        losses = other.losses;
+        draws = other.draws;
+        rating = other.rating;
+    }
+}
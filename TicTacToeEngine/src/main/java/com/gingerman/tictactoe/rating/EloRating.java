@@ -0,0 +1,56 @@
+package com.gingerman.tictactoe.rating;
+
+import com.gingerman.tictactoe.model.Board;
+
+/**
+ * Elo rating system: a player's rating moves after each game by k times the difference between their score
+ * (1 for a win, 0.5 for a draw, 0 for a loss) and the score expected from the two players' ratings.
+ * The two players' changes always sum to zero.
+ */
+public class EloRating {
+    public static final double INITIAL_RATING = 1500;
+    public static final double DEFAULT_K_FACTOR = 32;
+
+    // a rating difference of this much makes the higher rated player 10 times as likely to win
+    private static final double SCALE = 400;
+
+    private final double kFactor;
+
+    public EloRating() {
+        this(DEFAULT_K_FACTOR);
+    }
+
+    /**
+     * @param k largest change a single game can make to a rating
+     */
+    public EloRating(double k) {
+        kFactor = k;
+    }
+
+    /**
+     * @return largest change a single game can make to a rating
+     */
+    public double getKFactor() {
+        return kFactor;
+    }
+
+    /**
+     * @param rating player's rating
+     * @param opponentRating opponent's rating
+     * @return the player's expected score against the opponent, from 0 to 1
+     */
+    public double expectedScore(double rating, double opponentRating) {
+        return 1 / (1 + Math.pow(10, (opponentRating - rating) / SCALE));
+    }
+
+    /**
+     * @param rating1 player 1's rating before the game
+     * @param rating2 player 2's rating before the game
+     * @param winner Board.PLAYER_1, Board.PLAYER_2, or Board.EMPTY for a draw
+     * @return change to player 1's rating. Player 2's is the negation.
+     */
+    public double ratingChange(double rating1, double rating2, int winner) {
+        double score = winner == Board.PLAYER_1 ? 1 : winner == Board.PLAYER_2 ? 0 : 0.5;
+        return kFactor * (score - expectedScore(rating1, rating2));
+    }
+}
@@ -0,0 +1,70 @@
+package com.gingerman.tictactoe.rating;
+
+import java.util.Arrays;
+
+/**
+ * Completed games in the order they were played, as parallel primitive arrays rather than an object per game,
+ * so millions of games fit in a few bytes each. Players are identified by small non-negative ids.
+ */
+public class GameHistory {
+    private int[] player1s;
+    private int[] player2s;
+    private byte[] winners; // Board.PLAYER_1, Board.PLAYER_2, or Board.EMPTY for a draw
+    private int size = 0;
+    private int playerCount = 0;
+
+    public GameHistory() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity number of games to make room for up front
+     */
+    public GameHistory(int capacity) {
+        player1s = new int[Math.max(capacity, 1)];
+        player2s = new int[player1s.length];
+        winners = new byte[player1s.length];
+    }
+
+    /**
+     * @param player1 id of the player who moved first
+     * @param player2 id of their opponent
+     * @param winner Board.PLAYER_1, Board.PLAYER_2, or Board.EMPTY for a draw
+     */
+    public void add(int player1, int player2, int winner) {
+        if (size == winners.length) {
+            int capacity = size * 2;
+            player1s = Arrays.copyOf(player1s, capacity);
+            player2s = Arrays.copyOf(player2s, capacity);
+            winners = Arrays.copyOf(winners, capacity);
+        }
+        player1s[size] = player1;
+        player2s[size] = player2;
+        winners[size] = (byte) winner;
+        size++;
+        playerCount = Math.max(playerCount, Math.max(player1, player2) + 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return one more than the largest player id seen, so ids index arrays of this size
+     */
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public int getPlayer1(int game) {
+        return player1s[game];
+    }
+
+    public int getPlayer2(int game) {
+        return player2s[game];
+    }
+
+    public int getWinner(int game) {
+        return winners[game];
+    }
+}
@@ -0,0 +1,150 @@
+package com.gingerman.tictactoe.rating;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Recomputes every player's rating from scratch by replaying their game history, for instance after the
+ * rating parameters change.
+ *
+ * A game only reads and writes its two players' ratings, so games with no player in common can be rated at
+ * the same time. The history is taken a window of games at a time, and each game given a level one past the
+ * latest level of either of its players' earlier games in the window. Games on the same level share no
+ * players, so each level is split between threads, while every player's games are still rated in the order
+ * they were played: the ratings come out exactly as a sequential replay would give them.
+ *
+ * Levels narrower than MIN_PARALLEL_LEVEL, as when a few players play most of the games, are rated on the
+ * calling thread, as splitting them would cost more than it saves.
+ */
+public class RatingRecalculator {
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 20;
+    private static final int MIN_PARALLEL_LEVEL = 4096;
+
+    private final EloRating elo;
+    private final ExecutorService executor; // null to replay sequentially
+    private final int threads;
+    private final int windowSize;
+
+    /**
+     * Replays games one at a time on the calling thread
+     * @param eloRating rating system to replay games with
+     */
+    public RatingRecalculator(EloRating eloRating) {
+        this(eloRating, null, 1, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param eloRating rating system to replay games with
+     * @param executorService executor to rate wide levels on, or null to replay sequentially
+     * @param threadCount number of parts to split each wide level into
+     * @param window number of games to level at a time, bounding the memory used
+     */
+    public RatingRecalculator(EloRating eloRating, ExecutorService executorService, int threadCount, int window) {
+        elo = eloRating;
+        executor = executorService;
+        threads = Math.max(threadCount, 1);
+        windowSize = window;
+    }
+
+    /**
+     * @param history every game to rate, in the order they were played
+     * @return every player's rating after the games, indexed by player id
+     */
+    public double[] recompute(GameHistory history) throws InterruptedException {
+        return recompute(history, new double[0]);
+    }
+
+    /**
+     * @param history games to rate, in the order they were played
+     * @param baseRatings players' ratings before the games, indexed by player id. Players beyond the end start
+     *                    from the initial rating.
+     * @return every player's rating after the games, indexed by player id
+     */
+    public double[] recompute(GameHistory history, double[] baseRatings) throws InterruptedException {
+        double[] ratings = new double[Math.max(history.getPlayerCount(), baseRatings.length)];
+        Arrays.fill(ratings, EloRating.INITIAL_RATING);
+        System.arraycopy(baseRatings, 0, ratings, 0, baseRatings.length);
+        if (executor == null || threads == 1) {
+            rate(history, ratings, 0, history.size());
+            return ratings;
+        }
+
+        int window = Math.min(windowSize, history.size());
+        int[] gameLevels = new int[window];
+        int[] ordered = new int[window]; // games of the window, grouped by level
+        int[] playerLevels = new int[ratings.length]; // latest level of each player's games, counting every window
+        int levelBase = 0; // levels before this belong to earlier windows
+        for (int start = 0; start < history.size(); start += window) {
+            int end = Math.min(start + window, history.size());
+
+            // level each game, counting the games on each level
+            int levelCount = 0;
+            for (int game = start; game < end; ++game) {
+                int player1 = history.getPlayer1(game);
+                int player2 = history.getPlayer2(game);
+                int level = Math.max(levelBase, Math.max(playerLevels[player1], playerLevels[player2])) + 1;
+                playerLevels[player1] = level;
+                playerLevels[player2] = level;
+                gameLevels[game - start] = level - levelBase - 1;
+                levelCount = Math.max(levelCount, level - levelBase);
+            }
+            int[] levelStarts = new int[levelCount + 1];
+            for (int i = 0; i < end - start; ++i) levelStarts[gameLevels[i] + 1]++;
+            for (int level = 0; level < levelCount; ++level) levelStarts[level + 1] += levelStarts[level];
+            int[] next = Arrays.copyOf(levelStarts, levelCount);
+            for (int i = 0; i < end - start; ++i) ordered[next[gameLevels[i]]++] = start + i;
+
+            for (int level = 0; level < levelCount; ++level) {
+                rateLevel(history, ratings, ordered, levelStarts[level], levelStarts[level + 1]);
+            }
+            levelBase += levelCount;
+        }
+        return ratings;
+    }
+
+    // rates games ordered[from] to ordered[to - 1], which share no players, split between threads if there are enough
+    private void rateLevel(final GameHistory history, final double[] ratings, final int[] ordered, int from, int to)
+            throws InterruptedException {
+        if (to - from < MIN_PARALLEL_LEVEL) {
+            for (int i = from; i < to; ++i) rate(history, ratings, ordered[i]);
+            return;
+        }
+
+        List<Future<?>> parts = new ArrayList<Future<?>>(threads);
+        int partSize = (to - from + threads - 1) / threads;
+        for (int partStart = from; partStart < to; partStart += partSize) {
+            final int first = partStart;
+            final int last = Math.min(partStart + partSize, to);
+            parts.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = first; i < last; ++i) rate(history, ratings, ordered[i]);
+                }
+            }));
+        }
+        // waiting on every part also makes its ratings visible to the next level
+        for (Future<?> part : parts) {
+            try {
+                part.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Rating failed", e.getCause());
+            }
+        }
+    }
+
+    private void rate(GameHistory history, double[] ratings, int from, int to) {
+        for (int game = from; game < to; ++game) rate(history, ratings, game);
+    }
+
+    private void rate(GameHistory history, double[] ratings, int game) {
+        int player1 = history.getPlayer1(game);
+        int player2 = history.getPlayer2(game);
+        double change = elo.ratingChange(ratings[player1], ratings[player2], history.getWinner(game));
+        ratings[player1] += change;
+        ratings[player2] -= change;
+    }
+}
@@ -0,0 +1,97 @@
+package com.gingerman.tictactoe.tools;
+
+import com.gingerman.tictactoe.ai.PerfectPlayTable;
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Offline tool that solves standard tic tac toe and writes the PerfectPlayTable asset.
+ * Usage: PerfectPlayTableGenerator [output file], defaulting to the app's assets directory.
+ *
+ * Every position reachable from the empty board is solved by memoized negamax on Board, so the table
+ * follows the same rules as live games. Among equally valued moves the quickest win, or slowest loss, is
+ * chosen, with ties going to the lowest position. Only canonical positions are written, as the table looks
+ * every position up by its canonical form.
+ */
+public class PerfectPlayTableGenerator {
+    private static final String DEFAULT_OUTPUT = "TicTacToe/src/main/assets/" + PerfectPlayTable.ASSET_NAME;
+    private static final int UNSOLVED = Integer.MIN_VALUE;
+
+    private final Board board = new Board(GameConfig.STANDARD);
+    private final int[] scores = new int[PerfectPlayTable.INDEX_COUNT];
+    private final byte[] entries = new byte[PerfectPlayTable.INDEX_COUNT];
+    private int solvedCount = 0;
+    private int writtenCount = 0;
+
+    public static void main(String[] args) throws IOException {
+        String output = args.length > 0 ? args[0] : DEFAULT_OUTPUT;
+        PerfectPlayTableGenerator generator = new PerfectPlayTableGenerator();
+        generator.solve();
+
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(output));
+        try {
+            generator.write(out);
+        } finally {
+            out.close();
+        }
+        System.out.println(String.format("solved %d positions, %d canonical written to %s", generator.solvedCount,
+                generator.writtenCount, output));
+    }
+
+    // the solved positions that are their own canonical form, keys then entries, in ascending key order
+    private void write(DataOutputStream out) throws IOException {
+        long[] bits = new long[2];
+        for (int index = 0; index < scores.length; ++index) {
+            if (scores[index] != UNSOLVED && PerfectPlayTable.canonicalIndex(index, bits) == index) writtenCount++;
+        }
+        out.writeInt(PerfectPlayTable.MAGIC);
+        out.writeInt(writtenCount);
+        for (int index = 0; index < scores.length; ++index) {
+            if (scores[index] != UNSOLVED && PerfectPlayTable.canonicalIndex(index, bits) == index) out.writeChar(index);
+        }
+        for (int index = 0; index < scores.length; ++index) {
+            if (scores[index] != UNSOLVED && PerfectPlayTable.canonicalIndex(index, bits) == index) out.write(entries[index]);
+        }
+    }
+
+    private void solve() {
+        for (int i = 0; i < scores.length; ++i) scores[i] = UNSOLVED;
+        negamax();
+    }
+
+    // score for the player to move: positive wins, larger the sooner; negative loses; 0 draws
+    private int negamax() {
+        int index = (int) board.getPackedIndex();
+        if (scores[index] != UNSOLVED) return scores[index];
+
+        int best;
+        int bestMove = PerfectPlayTable.NO_MOVE;
+        if (board.getWinner() != Board.EMPTY) {
+            best = board.getMoveCount() - board.getSize() - 1; // previous player completed a line
+        } else if (board.isComplete()) {
+            best = 0;
+        } else {
+            best = Integer.MIN_VALUE;
+            for (int position = 0; position < board.getSize(); ++position) {
+                if (!board.play(position)) continue;
+                int score = -negamax();
+                board.undo();
+                if (score > best) {
+                    best = score;
+                    bestMove = position;
+                }
+            }
+        }
+
+        int value = best > 0 ? PerfectPlayTable.VALUE_WIN :
+                (best < 0 ? PerfectPlayTable.VALUE_LOSS : PerfectPlayTable.VALUE_DRAW);
+        scores[index] = best;
+        entries[index] = PerfectPlayTable.packEntry(bestMove, value);
+        solvedCount++;
+        return best;
+    }
+}
@@ -0,0 +1,110 @@
+package com.gingerman.tictactoe.tools;
+
+import com.gingerman.tictactoe.ai.PerfectPlayTable;
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Offline tool that checks a PerfectPlayTable asset against a full, unmemoized minimax solver.
+ * Usage: PerfectPlayTableVerifier [table file], defaulting to the app's assets directory.
+ *
+ * Every reachable position must have the solver's value, and a best move that is legal and keeps that value.
+ * Every unreachable position must be VALUE_UNKNOWN. Exits with status 1 on the first mismatch.
+ */
+public class PerfectPlayTableVerifier {
+    private static final String DEFAULT_INPUT = "TicTacToe/src/main/assets/" + PerfectPlayTable.ASSET_NAME;
+    private static final int REACHABLE_POSITIONS = 5478;
+
+    private final Board board = new Board(GameConfig.STANDARD);
+    private final boolean[] reachable = new boolean[PerfectPlayTable.INDEX_COUNT];
+    private final PerfectPlayTable table;
+    private int reachableCount = 0;
+
+    private PerfectPlayTableVerifier(PerfectPlayTable perfectPlayTable) {
+        table = perfectPlayTable;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String input = args.length > 0 ? args[0] : DEFAULT_INPUT;
+        InputStream in = new FileInputStream(input);
+        PerfectPlayTable table;
+        try {
+            table = PerfectPlayTable.load(in);
+        } finally {
+            in.close();
+        }
+
+        PerfectPlayTableVerifier verifier = new PerfectPlayTableVerifier(table);
+        verifier.verifyReachable();
+        if (verifier.reachableCount != REACHABLE_POSITIONS)
+            fail(String.format("found %d reachable positions, expected %d", verifier.reachableCount, REACHABLE_POSITIONS));
+        verifier.verifyUnreachable();
+        System.out.println(String.format("verified %d positions in %s", verifier.reachableCount, input));
+    }
+
+    // walks every reachable position once, comparing the table with the solver
+    private void verifyReachable() {
+        int index = (int) board.getPackedIndex();
+        if (reachable[index]) return;
+        reachable[index] = true;
+        reachableCount++;
+
+        int expected = solve();
+        int value = table.getValue(board);
+        if (value != toTableValue(expected))
+            fail(String.format("position %d has value %d, solver says %d", index, value, toTableValue(expected)));
+
+        int move = table.getBestMove(board);
+        if (board.isComplete()) {
+            if (move != -1) fail(String.format("finished position %d has move %d", index, move));
+            return;
+        }
+        if (!board.play(move)) fail(String.format("position %d has illegal move %d", index, move));
+        int achieved = -solve();
+        board.undo();
+        if (achieved != expected)
+            fail(String.format("position %d move %d scores %d, best is %d", index, move, achieved, expected));
+
+        for (int position = 0; position < board.getSize(); ++position) {
+            if (!board.play(position)) continue;
+            verifyReachable();
+            board.undo();
+        }
+    }
+
+    private void verifyUnreachable() {
+        for (int index = 0; index < reachable.length; ++index) {
+            if (reachable[index]) continue;
+            int value = table.getValue(index);
+            if (value != PerfectPlayTable.VALUE_UNKNOWN)
+                fail(String.format("unreachable position %d has value %d", index, value));
+        }
+    }
+
+    // plain minimax from the player to move: 1 win, 0 draw, -1 loss
+    private int solve() {
+        if (board.getWinner() != Board.EMPTY) return -1;
+        if (board.isComplete()) return 0;
+        int best = -1;
+        for (int position = 0; position < board.getSize() && best < 1; ++position) {
+            if (!board.play(position)) continue;
+            best = Math.max(best, -solve());
+            board.undo();
+        }
+        return best;
+    }
+
+    private static int toTableValue(int score) {
+        return score > 0 ? PerfectPlayTable.VALUE_WIN :
+                (score < 0 ? PerfectPlayTable.VALUE_LOSS : PerfectPlayTable.VALUE_DRAW);
+    }
+
+    private static void fail(String message) {
+        System.err.println("verification failed: " + message);
+        System.exit(1);
+    }
+}
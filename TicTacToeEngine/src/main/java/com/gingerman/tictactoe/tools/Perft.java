@@ -0,0 +1,169 @@
+package com.gingerman.tictactoe.tools;
+
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline tool that walks the complete game tree from the empty board, counting positions, finished games,
+ * wins for each side and draws at every ply, and reporting how many positions it visits per second.
+ * Usage: Perft [rows columns inARow] [max depth] [split depth] [threads], defaulting to standard tic tac toe.
+ *
+ * The walk plays and undoes moves on Board, the rules engine behind Game, so it doubles as a regression test
+ * for it: the standard game's totals are checked against the known ones, exiting with status 1 on a mismatch.
+ * The tree is enumerated to the split depth on the calling thread, and the subtree under every position there
+ * is walked as a separate task on a fixed thread pool.
+ */
+public class Perft {
+    private static final int DEFAULT_SPLIT_DEPTH = 2;
+
+    // known standard game totals: finished games, first player wins, second player wins, draws
+    private static final long[] STANDARD_TOTALS = {255168, 131184, 77904, 46080};
+
+    private final GameConfig config;
+    private final int maxDepth;
+    private final int splitDepth;
+
+    private Perft(GameConfig gameConfig, int maxDepth, int splitDepth) {
+        config = gameConfig;
+        this.maxDepth = maxDepth;
+        this.splitDepth = Math.min(splitDepth, maxDepth);
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        GameConfig config = args.length >= 3 ?
+                GameConfig.valueOf(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2])) :
+                GameConfig.STANDARD;
+        int maxDepth = args.length > 3 ? Integer.parseInt(args[3]) : config.getSize();
+        int splitDepth = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_SPLIT_DEPTH;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+        Perft perft = new Perft(config, Math.min(maxDepth, config.getSize()), splitDepth);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        Counts counts;
+        try {
+            counts = perft.run(executor);
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("%s, depth %d, %d threads", config, perft.maxDepth, threads));
+        System.out.println(String.format("%5s %16s %14s %14s %14s %14s", "ply", "positions", "games", "first wins", "second wins", "draws"));
+        for (int ply = 0; ply <= perft.maxDepth; ++ply) {
+            System.out.println(String.format("%5d %16d %14d %14d %14d %14d", ply, counts.positions[ply],
+                    counts.firstWins[ply] + counts.secondWins[ply] + counts.draws[ply],
+                    counts.firstWins[ply], counts.secondWins[ply], counts.draws[ply]));
+        }
+        long[] totals = counts.totals();
+        System.out.println(String.format("%5s %16d %14d %14d %14d %14d", "total", totals[4], totals[0], totals[1], totals[2], totals[3]));
+        System.out.println(String.format("%.3fs, %.0f positions/s", seconds, totals[4] / seconds));
+
+        if (GameConfig.STANDARD.equals(config) && perft.maxDepth == config.getSize()) {
+            for (int i = 0; i < STANDARD_TOTALS.length; ++i) {
+                if (totals[i] != STANDARD_TOTALS[i]) {
+                    System.err.println(String.format("standard game totals differ from the known %d games, %d first wins, %d second wins, %d draws",
+                            STANDARD_TOTALS[0], STANDARD_TOTALS[1], STANDARD_TOTALS[2], STANDARD_TOTALS[3]));
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    private Counts run(ExecutorService executor) throws InterruptedException, ExecutionException {
+        Counts counts = new Counts(maxDepth);
+        List<Callable<Counts>> subtrees = new ArrayList<Callable<Counts>>();
+        split(new Board(config), counts, subtrees);
+        for (Future<Counts> result : executor.invokeAll(subtrees)) counts.add(result.get());
+        return counts;
+    }
+
+    // counts positions above the split depth, queueing a task for the subtree under each one at it
+    private void split(Board board, Counts counts, List<Callable<Counts>> subtrees) {
+        if (board.getMoveCount() == splitDepth && !board.isComplete()) {
+            final Board subtree = new Board(board);
+            subtrees.add(new Callable<Counts>() {
+                @Override
+                public Counts call() {
+                    Counts subtreeCounts = new Counts(maxDepth);
+                    walk(subtree, subtreeCounts);
+                    return subtreeCounts;
+                }
+            });
+            return;
+        }
+        if (count(board, counts)) return;
+        for (int position = 0; position < board.getSize(); ++position) {
+            if (!board.play(position)) continue;
+            split(board, counts, subtrees);
+            board.undo();
+        }
+    }
+
+    private void walk(Board board, Counts counts) {
+        if (count(board, counts)) return;
+        for (int position = 0; position < board.getSize(); ++position) {
+            if (!board.play(position)) continue;
+            walk(board, counts);
+            board.undo();
+        }
+    }
+
+    // counts the board's position, returning true if the walk stops here
+    private boolean count(Board board, Counts counts) {
+        int ply = board.getMoveCount();
+        counts.positions[ply]++;
+        int winner = board.getWinner();
+        if (winner == Board.PLAYER_1) counts.firstWins[ply]++;
+        else if (winner == Board.PLAYER_2) counts.secondWins[ply]++;
+        else if (board.isComplete()) counts.draws[ply]++;
+        return board.isComplete() || ply == maxDepth;
+    }
+
+    /**
+     * Per ply totals for part of the tree
+     */
+    private static class Counts {
+        final long[] positions;
+        final long[] firstWins;
+        final long[] secondWins;
+        final long[] draws;
+
+        Counts(int maxDepth) {
+            positions = new long[maxDepth + 1];
+            firstWins = new long[maxDepth + 1];
+            secondWins = new long[maxDepth + 1];
+            draws = new long[maxDepth + 1];
+        }
+
+        void add(Counts other) {
+            for (int ply = 0; ply < positions.length; ++ply) {
+                positions[ply] += other.positions[ply];
+                firstWins[ply] += other.firstWins[ply];
+                secondWins[ply] += other.secondWins[ply];
+                draws[ply] += other.draws[ply];
+            }
+        }
+
+        // finished games, first player wins, second player wins, draws, then positions, over every ply
+        long[] totals() {
+            long[] totals = new long[5];
+            for (int ply = 0; ply < positions.length; ++ply) {
+                totals[1] += firstWins[ply];
+                totals[2] += secondWins[ply];
+                totals[3] += draws[ply];
+                totals[4] += positions[ply];
+            }
+            totals[0] = totals[1] + totals[2] + totals[3];
+            return totals;
+        }
+    }
+}
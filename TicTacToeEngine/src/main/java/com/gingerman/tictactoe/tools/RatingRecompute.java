@@ -0,0 +1,87 @@
+package com.gingerman.tictactoe.tools;
+
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.rating.EloRating;
+import com.gingerman.tictactoe.rating.GameHistory;
+import com.gingerman.tictactoe.rating.RatingRecalculator;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Offline tool that recomputes ratings for a generated history of games, sequentially and then in parallel,
+ * timing both and checking they agree exactly. Usage: RatingRecompute [players] [games] [threads] [k factor]
+ * Exits with status 1 if they don't agree.
+ *
+ * Players are given hidden strengths, and each game's result drawn from the difference between its players'
+ * strengths, so the ratings should come out ordered roughly by strength.
+ */
+public class RatingRecompute {
+    private static final int DEFAULT_PLAYERS = 100000;
+    private static final int DEFAULT_GAMES = 5000000;
+    private static final double DRAW_CHANCE = 0.3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PLAYERS;
+        int gameCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_GAMES;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        double kFactor = args.length > 3 ? Double.parseDouble(args[3]) : EloRating.DEFAULT_K_FACTOR;
+
+        System.out.println(String.format("%d games between %d players, k factor %.1f", gameCount, playerCount, kFactor));
+        GameHistory history = generateHistory(playerCount, gameCount, new Random(42));
+        EloRating elo = new EloRating(kFactor);
+
+        long start = System.nanoTime();
+        double[] sequential = new RatingRecalculator(elo).recompute(history);
+        report("sequential", start, gameCount);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        double[] parallel;
+        try {
+            start = System.nanoTime();
+            parallel = new RatingRecalculator(elo, executor, threads, RatingRecalculator.DEFAULT_WINDOW_SIZE).recompute(history);
+            report(String.format("parallel, %d threads", threads), start, gameCount);
+        } finally {
+            executor.shutdown();
+        }
+
+        double[] sorted = sequential.clone();
+        Arrays.sort(sorted);
+        System.out.println(String.format("ratings from %.0f to %.0f, median %.0f",
+                sorted[0], sorted[sorted.length - 1], sorted[sorted.length / 2]));
+
+        if (!Arrays.equals(sequential, parallel)) {
+            System.out.println("MISMATCH: parallel ratings differ from sequential");
+            System.exit(1);
+        }
+        System.out.println("parallel ratings match sequential");
+    }
+
+    private static GameHistory generateHistory(int playerCount, int gameCount, Random random) {
+        double[] strengths = new double[playerCount];
+        for (int i = 0; i < playerCount; ++i) strengths[i] = EloRating.INITIAL_RATING + 200 * random.nextGaussian();
+
+        EloRating truth = new EloRating();
+        GameHistory history = new GameHistory(gameCount);
+        for (int i = 0; i < gameCount; ++i) {
+            int player1 = random.nextInt(playerCount);
+            int player2 = random.nextInt(playerCount - 1);
+            if (player2 >= player1) player2++; // never themselves
+
+            double expected = truth.expectedScore(strengths[player1], strengths[player2]);
+            double roll = random.nextDouble();
+            int winner;
+            if (roll < DRAW_CHANCE) winner = Board.EMPTY;
+            else winner = (roll - DRAW_CHANCE) / (1 - DRAW_CHANCE) < expected ? Board.PLAYER_1 : Board.PLAYER_2;
+            history.add(player1, player2, winner);
+        }
+        return history;
+    }
+
+    private static void report(String name, long start, int gameCount) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%-22s %.3f s  %.1f M games/s", name, seconds, gameCount / seconds / 1e6));
+    }
+}
@@ -0,0 +1,198 @@
+package com.gingerman.tictactoe.tools;
+
+import com.gingerman.tictactoe.ai.AlphaBetaStrategy;
+import com.gingerman.tictactoe.ai.MonteCarloStrategy;
+import com.gingerman.tictactoe.ai.MoveStrategy;
+import com.gingerman.tictactoe.ai.PerfectPlayTable;
+import com.gingerman.tictactoe.ai.RandomStrategy;
+import com.gingerman.tictactoe.ai.Tablebase;
+import com.gingerman.tictactoe.model.ComputerPlayer;
+import com.gingerman.tictactoe.model.GameConfig;
+import com.gingerman.tictactoe.model.Match;
+import com.gingerman.tictactoe.model.Player;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline tool that plays computer players against each other, for tuning their strength and regression testing
+ * the rules. Usage: SelfPlay rows columns inARow strategyA strategyB games [threads] [thinking time ms]
+ * Strategies are random, perfect (standard games only), tablebase, alphabeta and mcts. The two sides swap who
+ * moves first every game.
+ *
+ * Each thread plays whole games on its own Match, reset between games, between its own pair of computer players,
+ * as the app plays them, with results credited to the players' records, and adds those records to shared counters every REPORT_BATCH games.
+ * The totals are printed every second while the games are being played, and once more at the end.
+ */
+public class SelfPlay {
+    private static final String ASSET_DIRECTORY = "TicTacToe/src/main/assets/";
+    private static final int REPORT_BATCH = 1024;
+    private static final long REPORT_INTERVAL_MS = 1000;
+    private static final long DEFAULT_THINKING_TIME_MS = 10;
+
+    private final GameConfig config;
+    private final String[] strategyNames;
+    private final long gameCount;
+    private final long thinkingTimeMillis;
+
+    // loaded once and shared, as lookups don't change them
+    private PerfectPlayTable perfectPlayTable = null;
+    private Tablebase tablebase = null;
+
+    // games claimed by workers so far, then results by strategy A wins, strategy B wins and draws
+    private final AtomicLong nextGame = new AtomicLong();
+    private final AtomicLong aWins = new AtomicLong();
+    private final AtomicLong bWins = new AtomicLong();
+    private final AtomicLong draws = new AtomicLong();
+    private final AtomicLong moves = new AtomicLong();
+
+    private SelfPlay(GameConfig gameConfig, String strategyA, String strategyB, long games, long thinkingTime) {
+        config = gameConfig;
+        strategyNames = new String[]{strategyA, strategyB};
+        gameCount = games;
+        thinkingTimeMillis = thinkingTime;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 6) {
+            System.err.println("usage: SelfPlay rows columns inARow strategyA strategyB games [threads] [thinking time ms]");
+            System.err.println("strategies: random, perfect, tablebase, alphabeta, mcts");
+            System.exit(2);
+        }
+        GameConfig config = GameConfig.valueOf(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        long games = Long.parseLong(args[5]);
+        int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        long thinkingTime = args.length > 7 ? Long.parseLong(args[7]) : DEFAULT_THINKING_TIME_MS;
+
+        SelfPlay selfPlay = new SelfPlay(config, args[3], args[4], games, thinkingTime);
+        selfPlay.loadTables();
+        // fail on a bad strategy name before starting any threads
+        selfPlay.createStrategy(args[3], 1);
+        selfPlay.createStrategy(args[4], 1);
+        selfPlay.run(threads);
+    }
+
+    private void loadTables() throws IOException {
+        for (String name : strategyNames) {
+            if (name.equals("perfect") && perfectPlayTable == null) {
+                if (!GameConfig.STANDARD.equals(config))
+                    throw new IllegalArgumentException("the perfect play table only covers standard games");
+                InputStream in = new FileInputStream(ASSET_DIRECTORY + PerfectPlayTable.ASSET_NAME);
+                try {
+                    perfectPlayTable = PerfectPlayTable.load(in);
+                } finally {
+                    in.close();
+                }
+            } else if (name.equals("tablebase") && tablebase == null) {
+                tablebase = Tablebase.open(new File(ASSET_DIRECTORY + Tablebase.fileNameFor(config)));
+            }
+        }
+    }
+
+    // strategies hold search state, so every thread gets its own, except the read only tables
+    private MoveStrategy createStrategy(String name, long seed) {
+        if (name.equals("random")) return new RandomStrategy(seed);
+        if (name.equals("perfect")) return perfectPlayTable;
+        if (name.equals("tablebase")) return tablebase;
+        if (name.equals("alphabeta")) return new AlphaBetaStrategy(thinkingTimeMillis);
+        if (name.equals("mcts")) return new MonteCarloStrategy(thinkingTimeMillis, 1, MonteCarloStrategy.DEFAULT_TREE_NODES);
+        throw new IllegalArgumentException("unknown strategy: " + name);
+    }
+
+    private void run(int threads) throws InterruptedException {
+        System.out.println(String.format("%s: %s vs %s, %d games on %d threads",
+                config, strategyNames[0], strategyNames[1], gameCount, threads));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch finished = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; ++i) executor.execute(new Worker(0x9E3779B97F4A7C15L * (i + 1), finished));
+        executor.shutdown();
+
+        while (!finished.await(REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS)) report(start);
+        report(start);
+    }
+
+    private void report(long start) {
+        long a = aWins.get();
+        long b = bWins.get();
+        long d = draws.get();
+        long played = a + b + d;
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%10d games  %s %.2f%%  %s %.2f%%  draws %.2f%%  %.1f moves/game  %.0f games/s",
+                played, strategyNames[0], percent(a, played), strategyNames[1], percent(b, played), percent(d, played),
+                played == 0 ? 0 : moves.get() / (double) played, played / seconds));
+    }
+
+    private static double percent(long count, long total) {
+        return total == 0 ? 0 : 100.0 * count / total;
+    }
+
+    /**
+     * Plays games until the requested number have been claimed, reusing its match, players and strategies
+     * throughout so a game allocates nothing beyond what the strategies do
+     */
+    private class Worker implements Runnable {
+        private final ComputerPlayer[] players; // strategy A's, then strategy B's
+        private final Match match;
+        private final CountDownLatch finished;
+        private long movesPlayed = 0;
+
+        Worker(long seed, CountDownLatch finishedLatch) {
+            players = new ComputerPlayer[]{
+                    new ComputerPlayer(new Player(1, strategyNames[0]), createStrategy(strategyNames[0], seed)),
+                    new ComputerPlayer(new Player(2, strategyNames[1]), createStrategy(strategyNames[1], ~seed))};
+            match = new Match(players[0], players[1], config);
+            finished = finishedLatch;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long batch = 0;
+                long game;
+                long startTime = System.currentTimeMillis(); // games' start times aren't read, so one will do
+                while ((game = nextGame.getAndIncrement()) < gameCount) {
+                    int first = (int) (game & 1); // index of the player moving first
+                    match.reset(players[first], players[first ^ 1], startTime);
+                    play();
+                    if (++batch == REPORT_BATCH) {
+                        flush();
+                        batch = 0;
+                    }
+                }
+                flush();
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        private void play() {
+            while (!match.isComplete()) {
+                ComputerPlayer player = (ComputerPlayer) match.current;
+                int move = match.selectMove(player.strategy);
+                if (!match.claim(move)) {
+                    throw new IllegalStateException(String.format("%s chose illegal move %d", player.name, move));
+                }
+            }
+            match.reportResult();
+            movesPlayed += match.getMoveCount();
+        }
+
+        // moves the players' records into the shared totals
+        private void flush() {
+            aWins.addAndGet(players[0].wins);
+            bWins.addAndGet(players[1].wins);
+            draws.addAndGet(players[0].draws);
+            moves.addAndGet(movesPlayed);
+            for (Player player : players) player.wins = player.losses = player.draws = 0;
+            movesPlayed = 0;
+        }
+    }
+}
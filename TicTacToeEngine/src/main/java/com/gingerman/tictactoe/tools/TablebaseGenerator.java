@@ -0,0 +1,174 @@
+package com.gingerman.tictactoe.tools;
+
+import com.gingerman.tictactoe.ai.PerfectPlayTable;
+import com.gingerman.tictactoe.ai.Tablebase;
+import com.gingerman.tictactoe.ai.TablebaseIndex;
+import com.gingerman.tictactoe.model.Board;
+import com.gingerman.tictactoe.model.GameConfig;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline tool that solves every position of a board of up to Tablebase.MAX_SIZE positions by retrograde
+ * analysis, and writes the Tablebase file.
+ * Usage: TablebaseGenerator rows columns inARow [output file] [threads], defaulting to the app's assets directory.
+ *
+ * Layers of positions are solved from the full board back to the empty one, each needing only the values of
+ * the layer after it, so just two layers are held in memory at a time. A layer is split into chunks solved in
+ * parallel, then packed and written at its offset in the file before moving on to the one before it.
+ * Positions are set up on a Board and moves played with Board.play, so the table follows the same rules as
+ * live games.
+ */
+public class TablebaseGenerator {
+    private static final String DEFAULT_OUTPUT_DIRECTORY = "TicTacToe/src/main/assets/";
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private final TablebaseIndex index;
+    private final ExecutorService executor;
+    private final int chunkCount;
+
+    private byte[] nextLayer = null; // one value per entry of the layer after the one being solved
+    private final long[] valueCounts = new long[4];
+
+    private TablebaseGenerator(GameConfig config, int threads) {
+        index = new TablebaseIndex(config);
+        executor = Executors.newFixedThreadPool(threads);
+        chunkCount = threads * CHUNKS_PER_THREAD;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length < 3) {
+            System.err.println("usage: TablebaseGenerator rows columns inARow [output file] [threads]");
+            System.exit(2);
+        }
+        GameConfig config = GameConfig.valueOf(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        if (config.getSize() > Tablebase.MAX_SIZE) {
+            System.err.println(String.format("boards of more than %d positions are too large to solve", Tablebase.MAX_SIZE));
+            System.exit(2);
+        }
+        String output = args.length > 3 ? args[3] : DEFAULT_OUTPUT_DIRECTORY + Tablebase.fileNameFor(config);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        TablebaseGenerator generator = new TablebaseGenerator(config, threads);
+        long start = System.nanoTime();
+        try {
+            generator.generate(output);
+        } finally {
+            generator.executor.shutdown();
+        }
+        long[] counts = generator.valueCounts;
+        System.out.println(String.format("solved %s in %.1fs: %d wins, %d draws, %d losses, %d unreachable, written to %s",
+                config, (System.nanoTime() - start) / 1e9, counts[PerfectPlayTable.VALUE_WIN],
+                counts[PerfectPlayTable.VALUE_DRAW], counts[PerfectPlayTable.VALUE_LOSS],
+                counts[PerfectPlayTable.VALUE_UNKNOWN], output));
+    }
+
+    private void generate(String output) throws IOException, InterruptedException, ExecutionException {
+        GameConfig config = index.getConfig();
+        RandomAccessFile file = new RandomAccessFile(output, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            file.setLength(Tablebase.HEADER_SIZE + index.getEntryCount() / TablebaseIndex.ENTRIES_PER_BYTE);
+            ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_SIZE);
+            header.putInt(Tablebase.MAGIC).putInt(config.rows).putInt(config.columns).putInt(config.inARow).flip();
+            writeFully(channel, header, 0);
+
+            for (int layer = config.getSize(); layer >= 0; --layer) {
+                byte[] values = solveLayer(layer);
+                writeFully(channel, ByteBuffer.wrap(pack(values)),
+                        Tablebase.HEADER_SIZE + index.getLayerOffset(layer) / TablebaseIndex.ENTRIES_PER_BYTE);
+                nextLayer = values;
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private byte[] solveLayer(final int layer) throws InterruptedException, ExecutionException {
+        final byte[] values = new byte[(int) index.getLayerSize(layer)];
+        long chunkSize = (values.length + chunkCount - 1) / chunkCount;
+        List<Callable<long[]>> chunks = new ArrayList<Callable<long[]>>();
+        for (long from = 0; from < values.length; from += chunkSize) {
+            final int start = (int) from;
+            final int end = (int) Math.min(values.length, from + chunkSize);
+            chunks.add(new Callable<long[]>() {
+                @Override
+                public long[] call() {
+                    return solveChunk(layer, start, end, values);
+                }
+            });
+        }
+        for (Future<long[]> result : executor.invokeAll(chunks)) {
+            long[] counts = result.get();
+            for (int value = 0; value < valueCounts.length; ++value) valueCounts[value] += counts[value];
+        }
+        return values;
+    }
+
+    // solves positions [start, end) of the layer, returning how many of each value were found
+    private long[] solveChunk(int layer, int start, int end, byte[] values) {
+        Board board = new Board(index.getConfig());
+        long[] bits = new long[2];
+        long[] counts = new long[4];
+        for (int rank = start; rank < end; ++rank) {
+            index.unrank(layer, rank, bits);
+            int value;
+            if (!board.setPosition(bits[0], bits[1])) {
+                value = PerfectPlayTable.VALUE_UNKNOWN;
+            } else if (board.getWinner() != Board.EMPTY) {
+                value = PerfectPlayTable.VALUE_LOSS;
+            } else if (board.isComplete()) {
+                value = PerfectPlayTable.VALUE_DRAW;
+            } else {
+                value = solvePosition(board);
+            }
+            values[rank] = (byte) value;
+            counts[value]++;
+        }
+        return counts;
+    }
+
+    // best value over every move from an unfinished position, looking children up in the next layer
+    private int solvePosition(Board board) {
+        int best = PerfectPlayTable.VALUE_LOSS;
+        for (int position = 0; position < board.getSize(); ++position) {
+            if (!board.play(position)) continue;
+            int childValue;
+            if (board.getWinner() != Board.EMPTY) {
+                childValue = PerfectPlayTable.VALUE_LOSS;
+            } else {
+                childValue = nextLayer[(int) index.rankInLayer(board.getBits(Board.PLAYER_1, 0), board.getBits(Board.PLAYER_2, 0))];
+            }
+            board.undo();
+
+            if (childValue == PerfectPlayTable.VALUE_LOSS) return PerfectPlayTable.VALUE_WIN;
+            if (childValue == PerfectPlayTable.VALUE_DRAW) best = PerfectPlayTable.VALUE_DRAW;
+            else if (childValue == PerfectPlayTable.VALUE_UNKNOWN)
+                throw new IllegalStateException("reached an unsolved position from layer " + board.getMoveCount());
+        }
+        return best;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) position += channel.write(buffer, position);
+    }
+
+    // four 2 bit values to a byte, the first in the low bits
+    private static byte[] pack(byte[] values) {
+        byte[] packed = new byte[(values.length + TablebaseIndex.ENTRIES_PER_BYTE - 1) / TablebaseIndex.ENTRIES_PER_BYTE];
+        for (int i = 0; i < values.length; ++i) {
+            packed[i / TablebaseIndex.ENTRIES_PER_BYTE] |= values[i] << (2 * (i % TablebaseIndex.ENTRIES_PER_BYTE));
+        }
+        return packed;
+    }
+}